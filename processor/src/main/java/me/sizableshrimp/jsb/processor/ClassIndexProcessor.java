@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes an index of every concrete {@code Command} and {@code EventListener} implementation to
+ * {@code META-INF/jsb/<supertype>} so that {@code CommandLoader} can load them without scanning the classpath.
+ * <p>
+ * Each line of an index is the binary name of a class. Classes annotated with {@code DisabledCommand} are left out,
+ * and classes annotated with {@code DebugOnlyCommand} have {@value #DEBUG_ONLY_MARKER} appended after a space.
+ */
+@SupportedAnnotationTypes("*")
+public class ClassIndexProcessor extends AbstractProcessor {
+    public static final String INDEX_DIRECTORY = "META-INF/jsb/";
+    public static final String DEBUG_ONLY_MARKER = "debug";
+    private static final List<String> INDEXED_TYPES = List.of("me.sizableshrimp.jsb.api.Command", "me.sizableshrimp.jsb.api.EventListener");
+    private static final String DISABLED_ANNOTATION = "me.sizableshrimp.jsb.api.DisabledCommand";
+    private static final String DEBUG_ONLY_ANNOTATION = "me.sizableshrimp.jsb.api.DebugOnlyCommand";
+    private final Map<String, Set<String>> indexes = new LinkedHashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndexes();
+            return false;
+        }
+
+        List<TypeMirror> indexedTypes = new ArrayList<>();
+        for (String name : INDEXED_TYPES) {
+            TypeElement element = this.processingEnv.getElementUtils().getTypeElement(name);
+            if (element != null)
+                indexedTypes.add(this.processingEnv.getTypeUtils().erasure(element.asType()));
+        }
+
+        for (Element element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement type)
+                visit(type, indexedTypes);
+        }
+
+        return false;
+    }
+
+    private void visit(TypeElement type, List<TypeMirror> indexedTypes) {
+        // Nested classes such as listeners declared inside another class are indexed too
+        for (Element enclosed : type.getEnclosedElements()) {
+            if (enclosed instanceof TypeElement nested)
+                visit(nested, indexedTypes);
+        }
+
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT) || hasAnnotation(type, DISABLED_ANNOTATION))
+            return;
+
+        TypeMirror erased = this.processingEnv.getTypeUtils().erasure(type.asType());
+        for (TypeMirror indexedType : indexedTypes) {
+            if (!this.processingEnv.getTypeUtils().isAssignable(erased, indexedType))
+                continue;
+
+            String line = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+            if (hasAnnotation(type, DEBUG_ONLY_ANNOTATION))
+                line += ' ' + DEBUG_ONLY_MARKER;
+            this.indexes.computeIfAbsent(indexedType.toString(), k -> new TreeSet<>()).add(line);
+        }
+    }
+
+    private static boolean hasAnnotation(TypeElement type, String annotation) {
+        return type.getAnnotationMirrors().stream()
+                .anyMatch(mirror -> ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation));
+    }
+
+    private void writeIndexes() {
+        for (Map.Entry<String, Set<String>> entry : this.indexes.entrySet()) {
+            try {
+                FileObject file = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_DIRECTORY + entry.getKey());
+                try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                    for (String line : entry.getValue()) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                }
+            } catch (IOException e) {
+                this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write class index for " + entry.getKey() + ": " + e);
+            }
+        }
+    }
+}
@@ -26,18 +26,27 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import me.sizableshrimp.jsb.api.DiscordConfiguration;
 import me.sizableshrimp.jsb.api.EventHandler;
+import me.sizableshrimp.jsb.api.WikiExecutor;
+import me.sizableshrimp.jsb.api.WikiGovernor;
+import me.sizableshrimp.jsb.data.ArticleCounter;
 import me.sizableshrimp.jsb.data.Config;
+import me.sizableshrimp.jsb.data.Language;
+import me.sizableshrimp.jsb.data.Mod;
+import me.sizableshrimp.jsb.util.SnapshotStore;
+import me.sizableshrimp.jsb.util.WikiUtil;
 import okhttp3.HttpUrl;
 import org.fastily.jwiki.core.Wiki;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-@SpringBootApplication
 public class Bot {
     public static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
     public static final Logger LOGGER = LoggerFactory.getLogger(Bot.class);
@@ -47,20 +56,71 @@ public class Bot {
 
     // Examples - https://github.com/fastily/jwiki/wiki/Examples
     public static void main(String[] args) {
-        SpringApplication.run(Bot.class, args);
+        long jvmStartup = ManagementFactory.getRuntimeMXBean().getUptime();
+        long start = System.nanoTime();
         // Loads the wiki instance only if the config instance was loaded
         if (!loadConfig())
             return;
-        Wiki wiki = loadWiki();
-        if (wiki == null)
-            return;
+        long configLoaded = System.nanoTime();
+
+        // Log in to the wiki while the gateway connects; the gateway buffers events until the listeners are registered
+        AtomicLong wikiLoaded = new AtomicLong();
+        Mono<WikiExecutor> wikiExecutorMono = Mono.fromCallable(Bot::loadWiki)
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(WikiExecutor::new)
+                .doOnNext(wikiExecutor -> {
+                    wikiLoaded.set(System.nanoTime());
+                    // Restore caches from the last run before warming up so that only missing data is loaded
+                    SnapshotStore.open(getSnapshotFile(), wikiExecutor.getWiki(), config.getApi());
+                    warmUpCaches(wikiExecutor);
+                })
+                .cache();
+        wikiExecutorMono.subscribe(null, e -> LOGGER.error("Failed to load wiki instance", e));
 
         DiscordConfiguration.login(config.getPrefix(), config.getBotToken(), IN_DEBUG_MODE, client -> {
-            EventHandler handler = new EventHandler(client, wiki);
-            handler.register();
+            long connected = System.nanoTime();
+            return wikiExecutorMono
+                    .doOnNext(wikiExecutor -> {
+                        long wikiReady = System.nanoTime();
+                        EventHandler handler = new EventHandler(client, wikiExecutor);
+                        handler.register();
+                        long registered = System.nanoTime();
+
+                        LOGGER.info("Started in {} ms (JVM startup: {} ms, config load: {} ms, wiki login: {} ms, gateway connect: {} ms, "
+                                        + "waiting for wiki after connect: {} ms, command loading: {} ms)",
+                                jvmStartup + toMillis(registered - start), jvmStartup, toMillis(configLoaded - start), toMillis(wikiLoaded.get() - configLoaded),
+                                toMillis(connected - configLoaded), toMillis(wikiReady - connected), toMillis(registered - wikiReady));
+                    })
+                    .onErrorResume(e -> Mono.empty())
+                    // Without a wiki there is nothing the bot can do
+                    .switchIfEmpty(Mono.defer(() -> client.logout().then(Mono.empty())));
         }).block();
     }
 
+    /**
+     * Loads the data used by the most common commands in the background, so that the first command does not have to wait for it.
+     */
+    private static void warmUpCaches(WikiExecutor wikiExecutor) {
+        long start = System.nanoTime();
+        Mono.when(
+                        wikiExecutor.call(wiki -> { Mod.preload(wiki); return true; }),
+                        wikiExecutor.call(wiki -> { Language.preload(wiki); return true; }),
+                        wikiExecutor.call(wiki -> { ArticleCounter.preload(wiki); return true; }),
+                        wikiExecutor.call(WikiUtil::getBaseArticleUrl))
+                .subscribe(null,
+                        e -> LOGGER.warn("Failed to warm up caches; they will be loaded on first use instead", e),
+                        () -> LOGGER.info("Warmed up caches in {} ms", toMillis(System.nanoTime() - start)));
+    }
+
+    private static Path getSnapshotFile() {
+        String file = System.getenv("SNAPSHOT_FILE");
+        return file == null ? Path.of("cache", "snapshot.bin") : Path.of(file);
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
     private static Wiki loadWiki() {
         Wiki wiki = setupWiki();
         if (wiki == null) {
@@ -110,11 +170,18 @@ public class Bot {
         Wiki.Builder builder = new Wiki.Builder();
         if (config.doLogin())
             builder.withLogin(config.getUsername(), config.getPassword());
-        return builder
+        Wiki wiki = builder
                 .withApiEndpoint(apiEndpoint)
                 .withUserAgent(config.getUserAgent())
                 .withPrefixLogging(false)
                 .build();
+
+        if (new WikiGovernor(config.getMaxRequestsPerSecond()).install(wiki)) {
+            LOGGER.info("Limiting wiki requests to {} per second", config.getMaxRequestsPerSecond());
+        } else {
+            LOGGER.warn("Wiki requests will not be rate limited");
+        }
+        return wiki;
     }
 
     public static Config getConfig() {
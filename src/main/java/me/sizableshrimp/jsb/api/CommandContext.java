@@ -24,4 +24,8 @@ package me.sizableshrimp.jsb.api;
 
 import org.fastily.jwiki.core.Wiki;
 
-public record CommandContext(CommandManager commandManager, Wiki wiki) {}
+public record CommandContext(CommandManager commandManager, WikiExecutor wikiExecutor) {
+    public Wiki wiki() {
+        return this.wikiExecutor.getWiki();
+    }
+}
@@ -23,31 +23,38 @@
 package me.sizableshrimp.jsb.api;
 
 import me.sizableshrimp.jsb.Bot;
-import org.reflections.Reflections;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Modifier;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
- * Auto-detects and loads commands that implement a generic token type T. Can be used to dynamically load up all commands
+ * Loads commands that implement a generic token type T. Can be used to dynamically load up all commands
  * without explicitly instantiating them. Injects needed dependencies into the instances individually.
- *
+ * <p>
+ * The implementations are read from an index under {@value #INDEX_DIRECTORY} which is generated at compile time
+ * by the {@code ClassIndexProcessor} in the {@code processor} project, so no classpath scanning happens at startup.
  */
 public final class CommandLoader {
     private static final Logger LOGGER = LoggerFactory.getLogger(CommandLoader.class);
-    private static final Reflections REFLECTIONS = new Reflections(Bot.class.getPackageName());
+    private static final String INDEX_DIRECTORY = "/META-INF/jsb/";
+    private static final String DEBUG_ONLY_MARKER = "debug";
     private static final Object[] EMPTY_INIT_ARGS = new Object[0];
     private static final Class[] EMPTY_PARAMETER_TYPES = new Class[0];
 
     private CommandLoader() {}
 
     /**
-     * Dynamically instantiates all classes that inherit from the {@code token} type T,
+     * Dynamically instantiates all indexed classes that inherit from the {@code token} type T,
      * ignoring classes that are annotated with {@link DisabledCommand} or {@link DebugOnlyCommand}.
+     * Only {@link Command} and {@link EventListener} implementations are indexed.
      * If a debug environment is detected where the "DEBUG" environment variable is non-null,
      * commands annotated with {@link DebugOnlyCommand} will be loaded.
      *
@@ -61,22 +68,39 @@ public final class CommandLoader {
             parameterTypes = EMPTY_PARAMETER_TYPES;
         if (initArgs == null)
             initArgs = EMPTY_INIT_ARGS;
-        Set<Class<? extends T>> commands = REFLECTIONS.getSubTypesOf(token);
         Set<T> instances = new HashSet<>();
         boolean inDebugEnv = Bot.IN_DEBUG_MODE;
 
-        for (Class<? extends T> clazz : commands) {
-            if (Modifier.isAbstract(clazz.getModifiers())
-                    || clazz.isAnnotationPresent(DisabledCommand.class)
-                    || (!inDebugEnv && clazz.isAnnotationPresent(DebugOnlyCommand.class))) {
-                continue;
+        try (InputStream in = CommandLoader.class.getResourceAsStream(INDEX_DIRECTORY + token.getName())) {
+            if (in == null) {
+                LOGGER.error("Could not find a class index for {}. Was the annotation processor run?", token.getName());
+                return Collections.emptySet();
             }
-            try {
-                T instance = clazz.getDeclaredConstructor(parameterTypes).newInstance(initArgs);
-                instances.add(instance);
-            } catch (Exception e) {
-                LOGGER.error("Could not load {}", clazz.getName(), e);
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty())
+                    continue;
+
+                // Disabled classes are already left out of the index by the processor
+                int space = line.indexOf(' ');
+                String className = space == -1 ? line : line.substring(0, space);
+                boolean debugOnly = space != -1 && line.substring(space + 1).equals(DEBUG_ONLY_MARKER);
+                if (!inDebugEnv && debugOnly)
+                    continue;
+
+                try {
+                    Class<? extends T> clazz = Class.forName(className).asSubclass(token);
+                    T instance = clazz.getDeclaredConstructor(parameterTypes).newInstance(initArgs);
+                    instances.add(instance);
+                } catch (Exception e) {
+                    LOGGER.error("Could not load {}", className, e);
+                }
             }
+        } catch (IOException e) {
+            LOGGER.error("Could not read the class index for {}", token.getName(), e);
         }
 
         return Collections.unmodifiableSet(instances);
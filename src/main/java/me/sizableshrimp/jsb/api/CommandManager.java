@@ -22,14 +22,17 @@
 
 package me.sizableshrimp.jsb.api;
 
+import discord4j.common.util.Snowflake;
 import discord4j.core.GatewayDiscordClient;
 import discord4j.core.event.domain.message.MessageCreateEvent;
-import discord4j.core.object.entity.Role;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.User;
 import discord4j.core.object.entity.channel.MessageChannel;
+import me.sizableshrimp.jsb.Bot;
 import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.args.ArgsProcessor;
 import me.sizableshrimp.jsb.util.MessageUtil;
-import org.fastily.jwiki.core.Wiki;
+import me.sizableshrimp.jsb.util.RoleCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Mono;
@@ -38,24 +41,53 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class CommandManager {
     protected static final Logger LOGGER = LoggerFactory.getLogger(CommandManager.class);
     protected final GatewayDiscordClient client;
     protected final Pattern mentionPrefix;
-    protected final Wiki wiki;
+    protected final WikiExecutor wikiExecutor;
+    protected final CommandScheduler scheduler;
     protected final Map<String, Command> commandMap = new HashMap<>();
+    private final Map<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
     protected Set<Command> commands;
 
-    public CommandManager(GatewayDiscordClient client, Wiki wiki) {
+    public CommandManager(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
         this.client = client;
         this.mentionPrefix = Pattern.compile("^<@!?" + client.getSelfId().asLong() + ">\\s*");
-        this.wiki = wiki;
+        this.wikiExecutor = wikiExecutor;
+        // Commands block on the wiki pool, so running more at once than it has threads would only queue them there
+        this.scheduler = new CommandScheduler(WikiExecutor.DEFAULT_THREADS);
         loadCommands();
     }
 
+    /**
+     * Cheaply checks whether the message could be a command before any channel or permission lookups are done.
+     * Messages from bots, messages without content, and messages that start with neither the prefix nor
+     * a mention of the bot are rejected.
+     *
+     * @param event The event to check.
+     * @return true if the message may be a command and should be passed to {@link #executeCommand(MessageCreateEvent)}.
+     */
+    public boolean isCommandCandidate(MessageCreateEvent event) {
+        Message message = event.getMessage();
+        if (message.getAuthor().map(User::isBot).orElse(true))
+            return false;
+
+        String content = message.getContent();
+        if (content.isEmpty())
+            return false;
+        if (content.startsWith(Bot.getConfig().getPrefix()))
+            return true;
+
+        String trimmed = content.trim();
+        return trimmed.startsWith("<@") && this.mentionPrefix.matcher(trimmed).lookingAt();
+    }
+
     public Mono<Void> executeCommand(MessageCreateEvent event) {
         Args args = ArgsProcessor.processWithPrefix(event.getMessage().getContent());
         if (args == null) {
@@ -72,11 +104,40 @@ public class CommandManager {
             return Mono.empty();
         }
 
-        return event.getMessage().getChannel().flatMap(MessageChannel::type)
-                .then(requireRoles(event, command.getRequiredRoles()))
-                .flatMap(b -> command.run(new CommandContext(this, this.wiki), event, finalArgs)).then()
+        Snowflake userId = event.getMessage().getAuthor().map(User::getId).orElseThrow();
+        // Only messages in guild channels reach this point, see MessageUtil#canReply
+        Snowflake guildId = event.getGuildId().orElseThrow();
+        return this.scheduler.submit(userId, guildId, () -> event.getMessage().getChannel().flatMap(MessageChannel::type)
+                        .then(requireRoles(event, command.getRequiredRoles()))
+                        // Commands perform blocking wiki calls, so run them on the wiki pool instead of the event loop
+                        .publishOn(this.wikiExecutor.getScheduler())
+                        .flatMap(b -> command.run(new CommandContext(this, this.wikiExecutor), event, finalArgs)).then())
+                .onErrorResume(RateLimitedException.class, limited -> event.getMessage().getChannel()
+                        .flatMap(channel -> MessageUtil.sendMessage(limited.getMessage(), channel)).then())
                 .onErrorResume(NoPermissionException.class, noperms -> event.getMessage().getChannel()
-                        .flatMap(channel -> MessageUtil.sendMessage(noperms.getMessage(), channel)).then());
+                        .flatMap(channel -> MessageUtil.sendMessage(noperms.getMessage(), channel)).then())
+                .onErrorResume(RejectedExecutionException.class, rejected -> event.getMessage().getChannel()
+                        .flatMap(channel -> MessageUtil.sendMessage("I am handling too many requests right now. Please try again in a moment.", channel)).then());
+    }
+
+    /**
+     * Shares one computation between identical requests that arrive while it is still running, such as several people
+     * looking up the same item at once. The first subscriber runs the computation on its own thread, and every subscriber
+     * that arrives before it finishes receives the same result or error. Later requests compute it again.
+     *
+     * @param command The command computing the result.
+     * @param args The arguments that fully determine the result, which must not depend on the channel or user.
+     * @param computation The blocking computation, which may return null for an empty result.
+     * @param <T> The type of the result.
+     * @return A {@link Mono} emitting the shared result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> coalesce(Command command, String args, Supplier<T> computation) {
+        String key = command.getName() + '\0' + args;
+        return Mono.defer(() -> (Mono<T>) this.inFlight.computeIfAbsent(key, k -> Mono.fromSupplier(computation)
+                // Only one computation per key can be in the map, so this cannot remove a newer one
+                .doFinally(signal -> this.inFlight.remove(k))
+                .cache()));
     }
 
     public void loadCommands() {
@@ -112,8 +173,7 @@ public class CommandManager {
             return Mono.just(true);
 
         return Mono.justOrEmpty(event.getMember())
-                .flatMap(m -> m.getRoles().map(Role::getName).collect(Collectors.toSet())
-                        .map(roles -> roles.containsAll(requiredRoles)))
+                .flatMap(m -> RoleCache.hasRoles(m, requiredRoles))
                 .filter(b -> b).switchIfEmpty(Mono.error(() -> new NoPermissionException(requiredRoles)));
     }
 }
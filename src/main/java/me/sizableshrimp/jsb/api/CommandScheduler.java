@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.api;
+
+import discord4j.common.util.Snowflake;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many commands each user and each guild can run, and how many commands run at once.
+ * <p>
+ * Every user and every guild has a token bucket, and a command is only accepted if both buckets have a token left.
+ * Accepted commands beyond the concurrency limit wait in a queue per guild, and the queues are served round-robin
+ * so that a burst of commands in one guild does not delay the commands of other guilds.
+ */
+public final class CommandScheduler {
+    private static final int USER_BURST = 5;
+    private static final double USER_TOKENS_PER_SECOND = 0.5;
+    private static final int GUILD_BURST = 20;
+    private static final double GUILD_TOKENS_PER_SECOND = 2;
+    private static final int MAX_QUEUED_PER_GUILD = 16;
+    // Buckets that have refilled completely hold no state worth keeping, so they are dropped this often
+    private static final long BUCKET_CLEANUP_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private final int maxConcurrent;
+    private final AtomicLong nextBucketCleanup = new AtomicLong(System.nanoTime() + BUCKET_CLEANUP_INTERVAL_NANOS);
+    private final Map<Snowflake, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<Snowflake, TokenBucket> guildBuckets = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Map<Snowflake, ArrayDeque<Task>> queues = new HashMap<>();
+    private final ArrayDeque<Snowflake> readyGuilds = new ArrayDeque<>();
+    // Guilds that were told their queue is full since it was last empty
+    private final Set<Snowflake> queueFullWarned = new HashSet<>();
+    private int running;
+
+    /**
+     * @param maxConcurrent The maximum number of commands that run at the same time.
+     */
+    public CommandScheduler(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Runs the command once the user and guild are within their rate limits and there is a free slot.
+     * <p>
+     * If a rate limit is exceeded, the returned {@link Mono} fails with a {@link RateLimitedException} the first time
+     * and completes empty for further attempts until the limit has passed, so that spamming does not cause more replies.
+     * If the queue of the guild is full, it fails with a {@link RejectedExecutionException} the first time
+     * and completes empty for further attempts until the queue has been emptied.
+     *
+     * @param userId The id of the user running the command.
+     * @param guildId The id of the guild the command was run in.
+     * @param command The command to run, which is only subscribed to once it may run.
+     * @return A {@link Mono} completing when the command completes.
+     */
+    public Mono<Void> submit(Snowflake userId, Snowflake guildId, Supplier<Mono<Void>> command) {
+        return Mono.defer(() -> {
+            long now = System.nanoTime();
+            cleanUpBucketsIfDue(now);
+            Attempt user = tryAcquire(this.userBuckets, userId, USER_BURST, USER_TOKENS_PER_SECOND, now);
+            if (!user.acquired()) {
+                return user.bucket().shouldWarn()
+                        ? Mono.error(new RateLimitedException("You are using commands too quickly! Please wait a moment before trying again."))
+                        : Mono.empty();
+            }
+            Attempt guild = tryAcquire(this.guildBuckets, guildId, GUILD_BURST, GUILD_TOKENS_PER_SECOND, now);
+            if (!guild.acquired()) {
+                // The command does not run, so it should not count against the user
+                user.bucket().refund();
+                return guild.bucket().shouldWarn()
+                        ? Mono.error(new RateLimitedException("Commands are being used too quickly in this server! Please wait a moment before trying again."))
+                        : Mono.empty();
+            }
+
+            return Mono.create(sink -> enqueue(new Task(guildId, command, sink)));
+        });
+    }
+
+    private void enqueue(Task task) {
+        synchronized (this) {
+            if (this.running >= this.maxConcurrent) {
+                ArrayDeque<Task> queue = this.queues.get(task.guildId);
+                if (queue == null) {
+                    queue = new ArrayDeque<>();
+                    this.queues.put(task.guildId, queue);
+                    this.readyGuilds.add(task.guildId);
+                } else if (queue.size() >= MAX_QUEUED_PER_GUILD) {
+                    if (this.queueFullWarned.add(task.guildId)) {
+                        task.sink.error(new RejectedExecutionException("Command queue of guild " + task.guildId.asString() + " is full"));
+                    } else {
+                        task.sink.success();
+                    }
+                    return;
+                }
+                queue.add(task);
+                task.sink.onCancel(() -> cancel(task));
+                return;
+            }
+            this.running++;
+        }
+        start(task);
+    }
+
+    private synchronized void cancel(Task task) {
+        ArrayDeque<Task> queue = this.queues.get(task.guildId);
+        if (queue != null && queue.remove(task) && queue.isEmpty()) {
+            this.queues.remove(task.guildId);
+            this.readyGuilds.remove(task.guildId);
+            this.queueFullWarned.remove(task.guildId);
+        }
+    }
+
+    private void start(Task task) {
+        Disposable disposable = Mono.defer(task.command)
+                .doFinally(signal -> finished())
+                .subscribe(null, task.sink::error, task.sink::success);
+        task.sink.onDispose(disposable);
+    }
+
+    private void finished() {
+        Task next;
+        synchronized (this) {
+            Snowflake guildId = this.readyGuilds.poll();
+            if (guildId == null) {
+                this.running--;
+                return;
+            }
+
+            ArrayDeque<Task> queue = this.queues.get(guildId);
+            next = queue.poll();
+            if (queue.isEmpty()) {
+                this.queues.remove(guildId);
+                this.queueFullWarned.remove(guildId);
+            } else {
+                this.readyGuilds.add(guildId); // Go to the back of the line
+            }
+        }
+        // The slot of the finished command is handed over to the next one
+        start(next);
+    }
+
+    private static Attempt tryAcquire(Map<Snowflake, TokenBucket> buckets, Snowflake id, int burst, double tokensPerSecond, long now) {
+        while (true) {
+            TokenBucket bucket = buckets.computeIfAbsent(id, k -> new TokenBucket(burst, tokensPerSecond, now));
+            synchronized (bucket) {
+                // A bucket removed by the cleanup after it was looked up must not be used, or its token would be lost
+                if (!bucket.retired)
+                    return new Attempt(bucket, bucket.tryAcquire(now));
+            }
+        }
+    }
+
+    private void cleanUpBucketsIfDue(long now) {
+        long due = this.nextBucketCleanup.get();
+        if (now - due < 0 || !this.nextBucketCleanup.compareAndSet(due, now + BUCKET_CLEANUP_INTERVAL_NANOS))
+            return;
+
+        cleanUpBuckets(this.userBuckets, now);
+        cleanUpBuckets(this.guildBuckets, now);
+    }
+
+    private static void cleanUpBuckets(Map<Snowflake, TokenBucket> buckets, long now) {
+        for (Map.Entry<Snowflake, TokenBucket> entry : buckets.entrySet()) {
+            TokenBucket bucket = entry.getValue();
+            if (bucket.retireIfFull(now))
+                buckets.remove(entry.getKey(), bucket);
+        }
+    }
+
+    private record Task(Snowflake guildId, Supplier<Mono<Void>> command, MonoSink<Void> sink) {}
+
+    private record Attempt(TokenBucket bucket, boolean acquired) {}
+
+    private static final class TokenBucket {
+        private final int capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+        private boolean warned;
+        // Guarded by this
+        private boolean retired;
+
+        private TokenBucket(int capacity, double tokensPerSecond, long now) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerSecond / 1_000_000_000D;
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        private synchronized boolean tryAcquire(long now) {
+            refill(now);
+            if (this.tokens < 1)
+                return false;
+
+            this.tokens--;
+            this.warned = false;
+            return true;
+        }
+
+        private synchronized void refund() {
+            this.tokens = Math.min(this.capacity, this.tokens + 1);
+        }
+
+        /**
+         * Returns true only for the first rejection since the last accepted command.
+         */
+        private synchronized boolean shouldWarn() {
+            if (this.warned)
+                return false;
+            this.warned = true;
+            return true;
+        }
+
+        /**
+         * Marks the bucket as no longer in use if it has refilled completely, since a new bucket would be identical.
+         */
+        private synchronized boolean retireIfFull(long now) {
+            refill(now);
+            if (this.tokens >= this.capacity)
+                this.retired = true;
+            return this.retired;
+        }
+
+        private void refill(long now) {
+            this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.tokensPerNano);
+            this.lastRefill = now;
+        }
+    }
+}
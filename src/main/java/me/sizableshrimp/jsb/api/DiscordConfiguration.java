@@ -28,18 +28,19 @@ import discord4j.core.object.presence.Activity;
 import discord4j.core.object.presence.Presence;
 import discord4j.rest.util.Image;
 import me.sizableshrimp.jsb.Bot;
-import org.reflections.Reflections;
-import org.reflections.scanners.ResourcesScanner;
 import reactor.core.publisher.Mono;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.function.Consumer;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 
 public class DiscordConfiguration {
-    private static final Reflections REFLECTIONS = new Reflections("images", new ResourcesScanner());
+    /**
+     * Avatar images are named {@code 1.png}, {@code 2.png}, etc. in this resource directory with no gaps in the numbering.
+     */
+    private static final String IMAGES_DIRECTORY = "/images/";
 
     private DiscordConfiguration() {}
 
@@ -49,13 +50,14 @@ public class DiscordConfiguration {
      *
      * @param prefix The prefix to use when setting the presence.
      * @param token The token of the discord bot.
-     * @param consumer A consumer to use the joined {@link GatewayDiscordClient}
-     * containing all shards immediately after login.
+     * @param setup A function called with the joined {@link GatewayDiscordClient}
+     * containing all shards immediately after login. The bot stays logged in until
+     * it disconnects, regardless of when the returned {@link Mono} completes.
      * @return A {@link Mono} that signals completion when all shards have
      * disconnected.
      */
-    public static Mono<Void> login(String prefix, String token, Consumer<GatewayDiscordClient> consumer) {
-        return login(prefix, token, false, consumer);
+    public static Mono<Void> login(String prefix, String token, Function<GatewayDiscordClient, Mono<?>> setup) {
+        return login(prefix, token, false, setup);
     }
 
     /**
@@ -65,12 +67,13 @@ public class DiscordConfiguration {
      * @param prefix The prefix to use when setting the presence.
      * @param token The token of the discord bot.
      * @param inDebugMode If true, will not update the avatar as during debugging this may be done too fast and cause errors.
-     * @param consumer A consumer to use the joined {@link GatewayDiscordClient}
-     * containing all shards immediately after login.
+     * @param setup A function called with the joined {@link GatewayDiscordClient}
+     * containing all shards immediately after login. The bot stays logged in until
+     * it disconnects, regardless of when the returned {@link Mono} completes.
      * @return A {@link Mono} that signals completion when all shards have
      * disconnected.
      */
-    public static Mono<Void> login(String prefix, String token, boolean inDebugMode, Consumer<GatewayDiscordClient> consumer) {
+    public static Mono<Void> login(String prefix, String token, boolean inDebugMode, Function<GatewayDiscordClient, Mono<?>> setup) {
         Image image = getImage();
 
         return DiscordClient.create(token).gateway()
@@ -79,15 +82,20 @@ public class DiscordConfiguration {
                 .withGateway(client ->
                         Mono.just(client)
                                 .flatMap(c -> image == null || inDebugMode ? Mono.just(c) : c.edit(u -> u.setAvatar(image)).thenReturn(c))
-                                .doOnNext(consumer)
+                                .flatMap(c -> setup.apply(c).thenReturn(c))
                                 .flatMap(GatewayDiscordClient::onDisconnect));
     }
 
     private static Image getImage() {
         try {
-            List<String> images = new ArrayList<>(REFLECTIONS.getResources(Pattern.compile(".*\\.png")));
+            List<String> images = new ArrayList<>();
+            for (int i = 1; DiscordConfiguration.class.getResource(IMAGES_DIRECTORY + i + ".png") != null; i++) {
+                images.add(IMAGES_DIRECTORY + i + ".png");
+            }
 
-            return Image.ofRaw(DiscordConfiguration.class.getResourceAsStream('/' + images.get(ThreadLocalRandom.current().nextInt(images.size()))).readAllBytes(), Image.Format.PNG);
+            try (InputStream in = DiscordConfiguration.class.getResourceAsStream(images.get(ThreadLocalRandom.current().nextInt(images.size())))) {
+                return Image.ofRaw(in.readAllBytes(), Image.Format.PNG);
+            }
         } catch (Exception e) {
             Bot.LOGGER.error("Could not read avatar image file. Falling back to current avatar.", e);
             return null;
@@ -23,7 +23,6 @@
 package me.sizableshrimp.jsb.api;
 
 import discord4j.core.GatewayDiscordClient;
-import org.fastily.jwiki.core.Wiki;
 
 import java.util.Set;
 
@@ -31,9 +30,9 @@ public class EventHandler {
     protected final GatewayDiscordClient client;
     protected final Set<EventListener> listeners;
 
-    public EventHandler(GatewayDiscordClient client, Wiki wiki) {
+    public EventHandler(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
         this.client = client;
-        this.listeners = CommandLoader.loadClasses(EventListener.class, new Class[]{GatewayDiscordClient.class, Wiki.class}, new Object[]{client, wiki});
+        this.listeners = CommandLoader.loadClasses(EventListener.class, new Class[]{GatewayDiscordClient.class, WikiExecutor.class}, new Object[]{client, wikiExecutor});
     }
 
     public void register() {
@@ -33,12 +33,14 @@ import reactor.core.publisher.Mono;
 public abstract class EventListener<T extends Event> {
     protected final Class<T> eventType;
     protected final GatewayDiscordClient client;
+    protected final WikiExecutor wikiExecutor;
     protected final Wiki wiki;
 
-    protected EventListener(Class<T> eventType, GatewayDiscordClient client, Wiki wiki) {
+    protected EventListener(Class<T> eventType, GatewayDiscordClient client, WikiExecutor wikiExecutor) {
         this.eventType = eventType;
         this.client = client;
-        this.wiki = wiki;
+        this.wikiExecutor = wikiExecutor;
+        this.wiki = wikiExecutor.getWiki();
     }
 
     protected abstract Mono<?> execute(Flux<T> onEvent);
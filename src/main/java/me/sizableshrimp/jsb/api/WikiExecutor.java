@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.api;
+
+import org.fastily.jwiki.core.Wiki;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Owns a {@link Wiki} instance and a bounded thread pool that all blocking jwiki calls should be run on,
+ * so that a slow MediaWiki round-trip never stalls the Discord4J event loop.
+ * The pool has a fixed number of threads and a bounded queue; tasks submitted while the queue is full
+ * are rejected with a {@link java.util.concurrent.RejectedExecutionException}.
+ */
+public final class WikiExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WikiExecutor.class);
+    public static final int DEFAULT_THREADS = 8;
+    public static final int DEFAULT_QUEUE_SIZE = 128;
+    private static final long SLOW_TASK_MILLIS = 5000;
+    private final Wiki wiki;
+    private final InstrumentedExecutor executor;
+    private final Scheduler scheduler;
+
+    /**
+     * Creates a {@link WikiExecutor} with {@link #DEFAULT_THREADS} threads and a queue of {@link #DEFAULT_QUEUE_SIZE} tasks.
+     *
+     * @param wiki The {@link Wiki} instance to run calls against.
+     */
+    public WikiExecutor(Wiki wiki) {
+        this(wiki, DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Creates a {@link WikiExecutor} with the given pool size and queue limit.
+     *
+     * @param wiki The {@link Wiki} instance to run calls against.
+     * @param threads The number of threads used to perform wiki calls.
+     * @param queueSize The maximum number of tasks waiting for a thread before new tasks are rejected.
+     */
+    public WikiExecutor(Wiki wiki, int threads, int queueSize) {
+        this.wiki = wiki;
+        this.executor = new InstrumentedExecutor(threads, queueSize);
+        this.scheduler = Schedulers.fromExecutorService(this.executor, "wiki");
+    }
+
+    /**
+     * Run a blocking call against the {@link Wiki} on the wiki thread pool.
+     *
+     * @param call The blocking call to run.
+     * @param <T> The type of the result.
+     * @return A {@link Mono} emitting the result of the call, or empty if the result was null.
+     */
+    public <T> Mono<T> call(Function<Wiki, T> call) {
+        return Mono.fromCallable(() -> call.apply(this.wiki)).subscribeOn(this.scheduler);
+    }
+
+    public Wiki getWiki() {
+        return this.wiki;
+    }
+
+    /**
+     * Returns whether the current thread belongs to a wiki thread pool, which runs commands and other requests that
+     * someone is waiting for. Used by {@link WikiGovernor} to serve these requests before background work.
+     *
+     * @return whether the current thread belongs to a wiki thread pool.
+     */
+    public static boolean isWikiThread() {
+        return Thread.currentThread() instanceof WikiThread;
+    }
+
+    /**
+     * Returns the {@link Scheduler} backed by the wiki thread pool.
+     * Use with {@link Mono#publishOn(Scheduler)} before any operator that performs blocking wiki calls.
+     *
+     * @return the {@link Scheduler} backed by the wiki thread pool.
+     */
+    public Scheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return this.executor.getQueue().size();
+    }
+
+    public long getCompletedCount() {
+        return this.executor.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount() {
+        return this.executor.rejected.sum();
+    }
+
+    /**
+     * Returns the average time in milliseconds a task spent running on the pool, or 0 if no tasks have completed.
+     *
+     * @return the average time in milliseconds a task spent running on the pool.
+     */
+    public double getAverageTaskMillis() {
+        long completed = this.executor.timedTasks.sum();
+        return completed == 0 ? 0 : this.executor.totalNanos.sum() / (completed * 1_000_000D);
+    }
+
+    public void shutdown() {
+        this.scheduler.dispose();
+    }
+
+    @Override
+    public String toString() {
+        return "WikiExecutor{" +
+                "active=" + getActiveCount() +
+                ", queued=" + getQueuedCount() +
+                ", completed=" + getCompletedCount() +
+                ", rejected=" + getRejectedCount() +
+                ", averageMillis=" + String.format("%.1f", getAverageTaskMillis()) +
+                '}';
+    }
+
+    private static class InstrumentedExecutor extends ThreadPoolExecutor {
+        private final ThreadLocal<Long> startTime = new ThreadLocal<>();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder timedTasks = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private InstrumentedExecutor(int threads, int queueSize) {
+            super(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), new WikiThreadFactory());
+            allowCoreThreadTimeOut(true);
+            setRejectedExecutionHandler((task, executor) -> {
+                this.rejected.increment();
+                LOGGER.warn("Rejected wiki task; pool is saturated with {} active and {} queued tasks", getActiveCount(), getQueue().size());
+                new AbortPolicy().rejectedExecution(task, executor);
+            });
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            super.beforeExecute(t, r);
+            this.startTime.set(System.nanoTime());
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            super.afterExecute(r, t);
+            Long start = this.startTime.get();
+            if (start == null)
+                return;
+            this.startTime.remove();
+
+            long elapsed = System.nanoTime() - start;
+            this.totalNanos.add(elapsed);
+            this.timedTasks.increment();
+            long millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+            if (millis >= SLOW_TASK_MILLIS)
+                LOGGER.warn("Wiki task took {}ms to complete ({} active, {} queued)", millis, getActiveCount(), getQueue().size());
+        }
+    }
+
+    private static class WikiThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new WikiThread(r, "wiki-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class WikiThread extends Thread {
+        private WikiThread(Runnable r, String name) {
+            super(r, name);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.api;
+
+import okhttp3.FormBody;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.fastily.jwiki.core.Wiki;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinates every HTTP request made by a {@link Wiki}, so that bursts of calls stay within the limits of the wiki.
+ * <ul>
+ *     <li>Requests are spread out to a requests-per-second budget, allowing a burst of up to one second's worth.</li>
+ *     <li>API requests send {@code maxlag}, so that the wiki can ask the bot to back off when its databases are lagged.</li>
+ *     <li>Maxlag errors and responses with status 429 are retried after their {@code Retry-After}, or with exponential
+ *     backoff if there is none. The wiki sends both before doing any work, so this is safe for edits and uploads too.
+ *     A 503 may come from a proxy after the wiki already handled the request, so it is only retried for read-only
+ *     actions. The backoff pauses all requests, not just the one that failed.</li>
+ *     <li>Requests from the {@link WikiExecutor} pool, which serves commands and other interactive use, get the next free
+ *     slot before requests from background threads such as cache refreshes and recent changes polling.</li>
+ * </ul>
+ * Use {@link #install(Wiki)} to add the governor to a {@link Wiki}.
+ */
+public final class WikiGovernor implements Interceptor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WikiGovernor.class);
+    private static final int MAXLAG_SECONDS = 5;
+    private static final int MAX_RETRIES = 4;
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    private static final Set<String> READ_ONLY_ACTIONS = Set.of("query", "parse");
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = this.lock.newCondition();
+    // Guarded by lock
+    private long nextPermitNanos = System.nanoTime();
+    private int interactiveWaiting;
+
+    /**
+     * @param requestsPerSecond The average number of requests allowed per second.
+     */
+    public WikiGovernor(double requestsPerSecond) {
+        if (requestsPerSecond <= 0)
+            throw new IllegalArgumentException("requestsPerSecond must be positive");
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.burstNanos = TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Adds this governor to the HTTP client of the {@link Wiki}.
+     * jwiki does not expose its client, so it is replaced with a copy that has this governor as an interceptor.
+     * Requests made before this is called, such as logging in, are not governed.
+     *
+     * @param wiki The {@link Wiki} to govern.
+     * @return true if the governor was installed, false if the client could not be found.
+     */
+    public boolean install(Wiki wiki) {
+        try {
+            for (Field field : Wiki.class.getDeclaredFields()) {
+                // The client is held by jwiki's ApiClient rather than the Wiki itself
+                if (Modifier.isStatic(field.getModifiers()) || !field.getType().getName().startsWith("org.fastily."))
+                    continue;
+                field.setAccessible(true);
+                Object holder = field.get(wiki);
+                if (holder == null)
+                    continue;
+
+                for (Field clientField : holder.getClass().getDeclaredFields()) {
+                    if (Modifier.isStatic(clientField.getModifiers()) || clientField.getType() != OkHttpClient.class)
+                        continue;
+                    clientField.setAccessible(true);
+                    OkHttpClient client = (OkHttpClient) clientField.get(holder);
+                    // The copy shares the connection pool and cookie jar, so the login session is kept
+                    clientField.set(holder, client.newBuilder().addInterceptor(this).build());
+                    return true;
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("Could not install the wiki request governor", e);
+        }
+        return false;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = withMaxlag(chain.request());
+        boolean interactive = WikiExecutor.isWikiThread();
+        for (int attempt = 0; ; attempt++) {
+            acquire(interactive);
+            Response response = chain.proceed(request);
+            long delayMillis = getRetryDelayMillis(request, response, attempt);
+            if (delayMillis < 0)
+                return response;
+            if (attempt >= MAX_RETRIES) {
+                LOGGER.warn("Giving up on {} after {} retries (status {})", request.url().encodedPath(), attempt, response.code());
+                return response;
+            }
+
+            response.close();
+            LOGGER.debug("Backing off for {} ms after status {} from {}", delayMillis, response.code(), request.url().encodedPath());
+            pause(delayMillis);
+        }
+    }
+
+    private static Request withMaxlag(Request request) {
+        HttpUrl url = request.url();
+        if (!url.encodedPath().endsWith("api.php") || url.queryParameter("maxlag") != null)
+            return request;
+        // MediaWiki reads parameters from both the query string and the body, so this works for POST requests too
+        return request.newBuilder()
+                .url(url.newBuilder().addQueryParameter("maxlag", Integer.toString(MAXLAG_SECONDS)).build())
+                .build();
+    }
+
+    /**
+     * Returns how long to wait before retrying the request, or -1 if the response should not be retried.
+     */
+    private static long getRetryDelayMillis(Request request, Response response, int attempt) {
+        // A maxlag error is a normal 200 response that carries the lag in a header
+        boolean lagged = response.header("X-Database-Lag") != null;
+        boolean retryable = lagged || response.code() == 429 || (response.code() == 503 && isReadOnly(request));
+        if (!retryable)
+            return -1;
+
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << attempt);
+        backoff += ThreadLocalRandom.current().nextLong(backoff / 4 + 1); // Jitter so retries do not line up
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter != null) {
+            try {
+                long seconds = Long.parseLong(retryAfter.trim());
+                return Math.min(MAX_BACKOFF_MILLIS, Math.max(TimeUnit.SECONDS.toMillis(seconds), lagged ? backoff : 0));
+            } catch (NumberFormatException ignored) {
+                // An HTTP date, which MediaWiki does not send; fall back to exponential backoff
+            }
+        }
+        return backoff;
+    }
+
+    /**
+     * Returns whether the request is an API action that does not change anything, which is safe to repeat.
+     * Requests whose action cannot be determined, such as multipart uploads, are assumed to change something.
+     */
+    private static boolean isReadOnly(Request request) {
+        String action = request.url().queryParameter("action");
+        if (action == null && request.body() instanceof FormBody form) {
+            for (int i = 0; i < form.size(); i++) {
+                if (form.name(i).equals("action")) {
+                    action = form.value(i);
+                    break;
+                }
+            }
+        }
+        return action != null && READ_ONLY_ACTIONS.contains(action);
+    }
+
+    private void acquire(boolean interactive) throws InterruptedIOException {
+        this.lock.lock();
+        try {
+            if (interactive)
+                this.interactiveWaiting++;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    long readyAt = this.nextPermitNanos;
+                    boolean yielding = !interactive && this.interactiveWaiting > 0;
+                    if (now - readyAt >= 0 && !yielding) {
+                        // Unused time up to the burst size is kept, so a quiet period allows a short burst
+                        this.nextPermitNanos = Math.max(this.nextPermitNanos, now - this.burstNanos) + this.intervalNanos;
+                        return;
+                    }
+
+                    long waitNanos = now - readyAt >= 0 ? this.intervalNanos : readyAt - now;
+                    this.changed.awaitNanos(waitNanos);
+                }
+            } finally {
+                if (interactive)
+                    this.interactiveWaiting--;
+                this.changed.signalAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a wiki request slot");
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void pause(long millis) {
+        this.lock.lock();
+        try {
+            // Pushing back the next permit also spreads out the requests that were waiting once the pause ends
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            this.nextPermitNanos = Math.max(this.nextPermitNanos, until);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
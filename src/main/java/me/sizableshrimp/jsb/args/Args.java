@@ -22,28 +22,46 @@
 
 package me.sizableshrimp.jsb.args;
 
-import java.util.Arrays;
-
 public final class Args {
     public static final String NO_BOOLEAN_MESSAGE = "The **%s** parameter should be one of `true`, `t`, or `1` for **true** or one of `false`, `f`, or `0` for **false**.";
     private final String name;
-    private final String[] args;
-    private final String joinedArgs;
+    // Token 0 is the name; arguments start at token 1
+    private final String source;
+    private final int[] bounds;
+    private final String[] tokens;
+    private final int length;
+    private String joinedArgs;
 
-    Args(String name, String[] args) {
+    /**
+     * Creates arguments backed by ranges of {@code source}. Any token whose entry in {@code tokens} is null is
+     * the substring of {@code source} between {@code bounds[2 * i]} and {@code bounds[2 * i + 1]},
+     * which is only created when first requested.
+     */
+    Args(String name, String source, int[] bounds, String[] tokens, int tokenCount) {
         this.name = name;
-        this.args = args;
-        this.joinedArgs = String.join(" ", args);
+        this.source = source;
+        this.bounds = bounds;
+        this.tokens = tokens;
+        this.length = tokenCount - 1;
     }
 
     public String getArg(int index) {
-        return this.args[index];
+        if (index < 0 || index >= this.length)
+            throw new ArrayIndexOutOfBoundsException(index);
+
+        int token = index + 1;
+        String arg = this.tokens[token];
+        if (arg == null) {
+            arg = this.source.substring(this.bounds[token * 2], this.bounds[token * 2 + 1]);
+            this.tokens[token] = arg;
+        }
+        return arg;
     }
 
     public String getArgNullable(int index) {
         if (index < 0 || index >= getLength())
             return null;
-        return this.args[index];
+        return getArg(index);
     }
 
     public boolean isArgValidBoolean(int index) {
@@ -94,7 +112,7 @@ public final class Args {
      * @return
      */
     public String getArgRange(int startInclusive) {
-        return getArgRange(startInclusive, this.args.length);
+        return getArgRange(startInclusive, this.length);
     }
 
     /**
@@ -105,7 +123,16 @@ public final class Args {
      * @return All arguments in this range joined by a space.
      */
     public String getArgRange(int startInclusive, int endExclusive) {
-        return String.join(" ", Arrays.copyOfRange(this.args, startInclusive, endExclusive));
+        if (startInclusive > endExclusive)
+            throw new IllegalArgumentException(startInclusive + " > " + endExclusive);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = startInclusive; i < endExclusive; i++) {
+            if (i != startInclusive)
+                builder.append(' ');
+            builder.append(getArg(i));
+        }
+        return builder.toString();
     }
 
     /**
@@ -119,16 +146,17 @@ public final class Args {
      * string.
      */
     public String getAfterSpace(int spaces) {
+        String joinedArgs = getJoinedArgs();
         int result = 0;
 
         for (int i = 0; i < spaces; i++) {
-            result = this.joinedArgs.indexOf(' ', result);
+            result = joinedArgs.indexOf(' ', result);
             if (result == -1)
                 throw new IllegalStateException("Too many spaces");
             result += 1;
         }
 
-        return this.joinedArgs.substring(result);
+        return joinedArgs.substring(result);
     }
 
     /**
@@ -142,15 +170,16 @@ public final class Args {
      * continuing to the end of the string.
      */
     public String getBeforeSpace(int spaces) {
-        int result = this.joinedArgs.length();
+        String joinedArgs = getJoinedArgs();
+        int result = joinedArgs.length();
 
         for (int i = 0; i < spaces; i++) {
-            result = this.joinedArgs.lastIndexOf(' ', result - 1);
+            result = joinedArgs.lastIndexOf(' ', result - 1);
             if (result == -1)
                 throw new IllegalStateException("Too many spaces");
         }
 
-        return this.joinedArgs.substring(result);
+        return joinedArgs.substring(result);
     }
 
     /**
@@ -159,7 +188,7 @@ public final class Args {
      * @return The length of the arguments, excluding the {@code name}.
      */
     public int getLength() {
-        return this.args.length;
+        return this.length;
     }
 
     public String getName() {
@@ -172,6 +201,8 @@ public final class Args {
      * @return all arguments joined by a space, excluding the {@code name}.
      */
     public String getJoinedArgs() {
+        if (this.joinedArgs == null)
+            this.joinedArgs = getArgRange(0);
         return this.joinedArgs;
     }
 }
@@ -24,14 +24,11 @@ package me.sizableshrimp.jsb.args;
 
 import me.sizableshrimp.jsb.Bot;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ArgsProcessor {
-    private static final Pattern SPACES = Pattern.compile("\\s+");
-
     private ArgsProcessor() {}
 
     public static Args processWithPrefix(String data) {
@@ -42,7 +39,7 @@ public class ArgsProcessor {
         if (data == null || data.isBlank() || !data.startsWith(prefix))
             return null;
 
-        return process(data.substring(prefix.length()));
+        return process(data, prefix.length());
     }
 
     public static Args processWithPrefixRegex(Pattern prefixRegex, String data) {
@@ -53,23 +50,77 @@ public class ArgsProcessor {
         if (!matcher.find() || matcher.start() != 0)
             return null;
 
-        return process(data.substring(matcher.end()));
+        return process(data, matcher.end());
     }
 
     public static Args process(String data) {
-        if (data == null || data.isBlank())
+        if (data == null)
             return null;
 
-        List<String> list = new ArrayList<>();
-        StringBuilder current = new StringBuilder();
+        return process(data, 0);
+    }
+
+    /**
+     * Splits {@code data} from {@code offset} onwards into a command name and arguments in a single pass.
+     * <p>
+     * Runs of whitespace act as a single space, double quotes group words containing spaces, a backslash escapes
+     * the following characters until the next backslash, and zero-width spaces are dropped. Each argument is
+     * trimmed. Arguments which are a plain run of characters in {@code data} are only stored as offsets and
+     * are not copied out until they are read from the returned {@link Args}.
+     *
+     * @param data The message content.
+     * @param offset The index in {@code data} to start reading from, e.g. the length of the prefix.
+     * @return The parsed {@link Args}, or null if there is nothing after {@code offset}.
+     */
+    private static Args process(String data, int offset) {
+        if (isBlank(data, offset))
+            return null;
+
+        // Same bounds as String#trim
+        int start = offset;
+        int end = data.length();
+        while (start < end && data.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && data.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        Tokens tokens = new Tokens(data);
+        StringBuilder current = null; // Only used once the current token stops being a plain run of characters
+        int tokenStart = start;
 
         boolean quote = false;
         boolean escaped = false;
-        char[] chars = SPACES.matcher(data.trim()).replaceAll(" ").toCharArray();
-        for (char c : chars) {
+        int i = start;
+        while (i < end) {
+            char c = data.charAt(i);
+            if (isSpace(c)) {
+                int next = i + 1;
+                while (next < end && isSpace(data.charAt(next))) {
+                    next++;
+                }
+                if (quote) {
+                    // Whitespace inside quotes is kept, but collapsed to a single space
+                    if (current == null)
+                        current = new StringBuilder().append(data, tokenStart, i);
+                    current.append(' ');
+                } else {
+                    tokens.add(tokenStart, i, current);
+                    current = null;
+                    tokenStart = next;
+                }
+                i = next;
+                continue;
+            }
+
             if (c == '"' && !escaped) {
+                if (current == null)
+                    current = new StringBuilder().append(data, tokenStart, i);
                 quote = !quote;
             } else if (c == '\\') {
+                if (current == null)
+                    current = new StringBuilder().append(data, tokenStart, i);
                 if (escaped) {
                     current.append(c);
                     escaped = false;
@@ -78,16 +129,72 @@ public class ArgsProcessor {
                 }
             } else if (c == '\u200B') {
                 // Don't add zero-width spaces; they may have come from the user copying messages from us.
-            } else if (c != ' ' || quote) {
-                // Append if not a space or still append space if inside a quote
+                if (current == null)
+                    current = new StringBuilder().append(data, tokenStart, i);
+            } else if (current != null) {
                 current.append(c);
+            }
+            i++;
+        }
+        tokens.add(tokenStart, end, current); // Add last arg
+
+        return new Args(tokens.get(0).toLowerCase(), data, tokens.bounds, tokens.values, tokens.size);
+    }
+
+    // Matches the characters of the \s regex character class
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isBlank(String data, int offset) {
+        for (int i = offset; i < data.length(); i++) {
+            if (!Character.isWhitespace(data.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * A growable list of tokens, each stored as either a trimmed range of the source string or an already built value.
+     */
+    private static final class Tokens {
+        private final String source;
+        private int[] bounds = new int[16];
+        private String[] values = new String[8];
+        private int size;
+
+        private Tokens(String source) {
+            this.source = source;
+        }
+
+        private void add(int start, int end, StringBuilder built) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+                this.bounds = Arrays.copyOf(this.bounds, this.size * 4);
+            }
+
+            if (built != null) {
+                this.values[this.size] = built.toString().trim();
             } else {
-                list.add(current.toString().trim());
-                current = new StringBuilder();
+                while (start < end && this.source.charAt(start) <= ' ') {
+                    start++;
+                }
+                while (end > start && this.source.charAt(end - 1) <= ' ') {
+                    end--;
+                }
+                this.bounds[this.size * 2] = start;
+                this.bounds[this.size * 2 + 1] = end;
             }
+            this.size++;
         }
-        list.add(current.toString().trim()); // Add last arg
 
-        return new Args(list.remove(0).toLowerCase(), list.toArray(String[]::new));
+        private String get(int index) {
+            String value = this.values[index];
+            if (value == null) {
+                value = this.source.substring(this.bounds[index * 2], this.bounds[index * 2 + 1]);
+                this.values[index] = value;
+            }
+            return value;
+        }
     }
 }
@@ -30,6 +30,7 @@ import me.sizableshrimp.jsb.api.CommandContext;
 import me.sizableshrimp.jsb.api.CommandInfo;
 import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.commands.AbstractCommand;
+import me.sizableshrimp.jsb.commands.utility.mod.GetModCommand;
 import me.sizableshrimp.jsb.data.Mod;
 import me.sizableshrimp.jsb.util.MessageUtil;
 import me.sizableshrimp.jsb.util.WikiUtil;
@@ -79,7 +80,7 @@ public class TilesheetRequestCommand extends AbstractCommand {
             Mod mod = Mod.getByInfo(context.wiki(), modInput);
 
             if (mod == null)
-                return sendMessage(String.format("The mod specified (**%s**) does not exist.", modInput), channel);
+                return GetModCommand.formatModDoesntExistMessage(channel, context.wiki(), modInput);
 
             String pageText = context.wiki().getPageText(REQUESTS_PAGE);
             Matcher matcher = PATTERN.matcher(pageText);
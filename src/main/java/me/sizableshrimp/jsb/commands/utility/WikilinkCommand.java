@@ -28,18 +28,14 @@ import me.sizableshrimp.jsb.api.CommandContext;
 import me.sizableshrimp.jsb.api.CommandInfo;
 import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.commands.AbstractCommand;
-import me.sizableshrimp.jsb.util.WikiUtil;
-import org.fastily.jwiki.core.QReply;
-import org.fastily.jwiki.core.WAction;
+import me.sizableshrimp.jsb.util.WikilinkResolver;
 import org.fastily.jwiki.core.Wiki;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 public class WikilinkCommand extends AbstractCommand {
-    private static final Pattern SPECIAL_PAGE = Pattern.compile("^:?Special:");
-
     @Override
     public CommandInfo getInfo(CommandContext context) {
         return new CommandInfo(this, "%cmdname% <page>", """
@@ -67,6 +63,8 @@ public class WikilinkCommand extends AbstractCommand {
         return event.getMessage().getChannel().flatMap(channel -> {
             String link = args.getJoinedArgs();
             String message = genWikilink(context.wiki(), link);
+            if (message.isEmpty())
+                message = String.format("**%s** is not a valid page title.", link);
             return sendMessage(message, channel);
         });
     }
@@ -76,27 +74,28 @@ public class WikilinkCommand extends AbstractCommand {
     }
 
     public static StringBuilder genWikilink(StringBuilder builder, Wiki wiki, String link) {
-        if (SPECIAL_PAGE.matcher(link).find()) {
-            boolean doesSpecialPageExist = QReply.wrap(WAction.getAction(wiki, "query", true, "titles", link, "prop", "pageprops"))
-                    .propComp("ns", "missing").get("-1") == null;
-            return doesSpecialPageExist
-                    ? builder.append(WikiUtil.getBaseWikiPageUrl(wiki, link)).append("\n")
-                    : builder.append("The special page **").append(link).append("** does not exist.\n");
-        }
-
-        String baseUrl = WikiUtil.getBaseArticleUrl(wiki);
-        String url = WikiUtil.getWikiPageUrl(wiki, link);
-        if (url == null) {
-            return builder;
-        }
+        return genWikilinks(builder, wiki, List.of(link));
+    }
 
-        int sectionLink = link.indexOf('#');
-        link = sectionLink == -1 ? link : link.substring(0, sectionLink);
-        if (url.startsWith(baseUrl) && !wiki.exists(link)) {
-            return builder.append("The page **").append(link).append("** does not exist. Create it here: <")
-                    .append(url).append(">\n");
+    /**
+     * Appends a line for each link to the builder, resolving all links together in as few requests as possible.
+     *
+     * @param builder The {@link StringBuilder} to append to.
+     * @param wiki The {@link Wiki} instance.
+     * @param links The links to generate, not including square brackets.
+     * @return The {@code builder}.
+     */
+    public static StringBuilder genWikilinks(StringBuilder builder, Wiki wiki, List<String> links) {
+        for (WikilinkResolver.Wikilink wikilink : WikilinkResolver.resolve(wiki, links)) {
+            switch (wikilink.type()) {
+                case PAGE, INTERWIKI, SPECIAL -> builder.append(wikilink.url()).append('\n');
+                case MISSING_PAGE -> builder.append("The page **").append(wikilink.title()).append("** does not exist. Create it here: <")
+                        .append(wikilink.url()).append(">\n");
+                case MISSING_SPECIAL -> builder.append("The special page **").append(wikilink.title()).append("** does not exist.\n");
+                case INVALID -> {}
+            }
         }
 
-        return builder.append(url).append('\n');
+        return builder;
     }
 }
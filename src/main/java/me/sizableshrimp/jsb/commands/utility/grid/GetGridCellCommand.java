@@ -29,17 +29,19 @@ import discord4j.core.object.entity.Message;
 import me.sizableshrimp.jsb.Bot;
 import me.sizableshrimp.jsb.api.CommandContext;
 import me.sizableshrimp.jsb.api.CommandInfo;
+import me.sizableshrimp.jsb.api.Reply;
 import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.commands.AbstractCommand;
 import me.sizableshrimp.jsb.commands.utility.mod.GetModCommand;
 import me.sizableshrimp.jsb.data.Mod;
 import me.sizableshrimp.jsb.util.CachedMap;
+import me.sizableshrimp.jsb.util.SnapshotStore;
 import me.sizableshrimp.jsb.util.WikiUtil;
 import org.fastily.jwiki.core.QTemplate;
 import org.fastily.jwiki.core.WQuery;
+import org.fastily.jwiki.core.Wiki;
 import org.fastily.jwiki.util.FL;
 import org.fastily.jwiki.util.GSONP;
-import org.imgscalr.Scalr;
 import reactor.core.publisher.Mono;
 
 import javax.imageio.ImageIO;
@@ -49,9 +51,11 @@ import java.awt.image.BufferedImage;
 import java.awt.image.ImagingOpException;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -64,8 +68,16 @@ public class GetGridCellCommand extends AbstractCommand {
     private static final QTemplate LIST_TILES = new QTemplate(FL.pMap("list", "tiles"), "tslimit", "tiles");
     private static final QTemplate LIST_TILESHEETS = new QTemplate(FL.pMap("list", "tilesheets"), "tslimit", "tilesheets");
     private static final Pattern ILLEGAL_FILE_CHARS = Pattern.compile("[^a-zA-Z0-9.\\-]");
+    private static final long TILESHEET_CACHE_BYTES = 64L * 1024 * 1024;
+    private static final long TILE_DISK_CACHE_BYTES = 256L * 1024 * 1024;
     private final CachedMap<String, Map<String, Tile>> cachedTiles = new CachedMap<>();
     private final CachedMap<String, Set<Integer>> cachedSizes = new CachedMap<>();
+    private final TilesheetCache tilesheetCache = new TilesheetCache(TILESHEET_CACHE_BYTES);
+    private final TileDiskCache tileDiskCache = TileDiskCache.open(getTileCacheDirectory(), TILE_DISK_CACHE_BYTES);
+
+    public GetGridCellCommand() {
+        SnapshotStore.register(new Snapshot());
+    }
 
     @Override
     public CommandInfo getInfo(CommandContext context) {
@@ -90,78 +102,89 @@ public class GetGridCellCommand extends AbstractCommand {
             return incorrectUsage(context, event);
         }
 
-        return event.getMessage().getChannel().flatMap(channel -> {
-            String modAbbrv = args.getArg(0);
-            Mod mod = Mod.getByAbbreviation(context.wiki(), modAbbrv);
-            if (mod == null) {
-                return GetModCommand.formatModDoesntExistMessage(channel, modAbbrv);
-            }
+        // Identical lookups running at the same time share one result, including the rendered image
+        return context.commandManager().coalesce(this, args.getJoinedArgs(), () -> getReply(context.wiki(), args.getArg(0), args.getArgRange(1)))
+                .flatMap(reply -> event.getMessage().getChannel().flatMap(reply::send));
+    }
 
-            String item = args.getArgRange(1);
-
-            Set<Integer> sizes = this.cachedSizes.getOrRetrieve(mod.abbrv(), k -> {
-                List<JsonObject> reply = new WQuery(context.wiki(), 1, LIST_TILESHEETS).set("tsfrom", k).next().listComp("tilesheets");
-                if (reply.isEmpty())
-                    return null;
-                Set<Integer> result = new HashSet<>();
-                JsonObject obj = reply.get(0);
-                if (!k.equals(GSONP.getStr(obj, "mod")))
-                    return null;
-                for (JsonElement size : obj.getAsJsonArray("sizes")) {
-                    result.add(size.getAsInt());
-                }
-                return result.isEmpty() ? null : result;
-            });
-            if (sizes == null) {
-                return sendMessage(String.format("A **%s** tilesheet could not be found.", mod.abbrv()), channel);
+    private Reply getReply(Wiki wiki, String modAbbrv, String item) {
+        Mod mod = Mod.getByAbbreviation(wiki, modAbbrv);
+        if (mod == null) {
+            return reply(GetModCommand.formatModDoesntExist(wiki, modAbbrv));
+        }
+
+        Set<Integer> sizes = this.cachedSizes.getOrRetrieve(mod.abbrv(), k -> {
+            List<JsonObject> reply = new WQuery(wiki, 1, LIST_TILESHEETS).set("tsfrom", k).next().listComp("tilesheets");
+            if (reply.isEmpty())
+                return null;
+            Set<Integer> result = new HashSet<>();
+            JsonObject obj = reply.get(0);
+            if (!k.equals(GSONP.getStr(obj, "mod")))
+                return null;
+            for (JsonElement size : obj.getAsJsonArray("sizes")) {
+                result.add(size.getAsInt());
             }
-            int size = sizes.stream().mapToInt(i -> i).max().getAsInt();
-            Map<String, Tile> tiles = this.cachedTiles.getOrRetrieve(mod.abbrv(), k -> {
-                List<JsonObject> reply = WikiUtil.getQueryRepliesAsList(LIST_TILES.createQuery(context.wiki()).set("tsmod", k), "tiles");
-                Map<String, Tile> result = new HashMap<>();
-                for (JsonObject obj : reply) {
-                    Tile tile = new Tile(obj.get("id").getAsLong(), obj.get("mod").getAsString(), obj.get("name").getAsString(), obj.get("x").getAsInt(), obj.get("y").getAsInt(), obj.get("z").getAsInt());
-                    result.put(tile.name().toLowerCase(), tile);
-                }
-                return result;
-            });
-            Tile selected = tiles.get(item.toLowerCase());
-            if (selected == null) {
-                return sendMessage(String.format("The item specified (**%s**) does not exist in the **%s** tilesheet.", item, mod.abbrv()), channel);
+            return result.isEmpty() ? null : result;
+        });
+        if (sizes == null) {
+            return reply(String.format("A **%s** tilesheet could not be found.", mod.abbrv()));
+        }
+        int size = sizes.stream().mapToInt(i -> i).max().getAsInt();
+        Map<String, Tile> tiles = this.cachedTiles.getOrRetrieve(mod.abbrv(), k -> {
+            List<JsonObject> reply = WikiUtil.getQueryRepliesAsList(LIST_TILES.createQuery(wiki).set("tsmod", k), "tiles");
+            Map<String, Tile> result = new HashMap<>();
+            for (JsonObject obj : reply) {
+                Tile tile = new Tile(obj.get("id").getAsLong(), obj.get("mod").getAsString(), obj.get("name").getAsString(), obj.get("x").getAsInt(), obj.get("y").getAsInt(), obj.get("z").getAsInt());
+                result.put(tile.name().toLowerCase(), tile);
             }
-
-            String file = String.format("File:Tilesheet %s %d %d.png", mod.abbrv(), size, selected.z);
-            String fileUrl = WikiUtil.getLatestFileUrl(context.wiki(), file);
-            if (fileUrl == null)
-                return sendMessage(String.format("The tilesheet file `%s` doesn't exist!", file), channel);
-
-            InputStream image = getImage(fileUrl, selected, mod, size);
-            if (image == null)
-                return sendMessage("An error occurred when attempting to retrieve the tilesheet. Please try again later.", channel);
-
-            String disambiguated = String.format("%s (%s)", selected.name(), mod.name());
-            String page = context.wiki().exists(disambiguated) ? disambiguated : selected.name();
-            String pageUrl = WikiUtil.getBaseWikiPageUrl(context.wiki(), page);
-            String attachment = ILLEGAL_FILE_CHARS.matcher(selected.name().replace(' ', '_') ).replaceAll("") + ".png";
-            return channel.createMessage(message -> message.addFile(attachment, image)
-                    .setEmbed(createRetrievalEmbed(embed -> embed.setImage("attachment://" + attachment)
-                            .setTitle(selected.name())
-                            .setUrl(pageUrl))));
+            return result;
         });
+        Tile selected = tiles.get(item.toLowerCase());
+        if (selected == null) {
+            return reply(String.format("The item specified (**%s**) does not exist in the **%s** tilesheet.", item, mod.abbrv()));
+        }
+
+        String file = String.format("File:Tilesheet %s %d %d.png", mod.abbrv(), size, selected.z);
+        WikiUtil.FileInfo fileInfo = WikiUtil.getLatestFileInfo(wiki, file);
+        if (fileInfo == null)
+            return reply(String.format("The tilesheet file `%s` doesn't exist!", file));
+
+        byte[] image = getImage(fileInfo, selected, mod, size);
+        if (image == null)
+            return reply("An error occurred when attempting to retrieve the tilesheet. Please try again later.");
+
+        String disambiguated = String.format("%s (%s)", selected.name(), mod.name());
+        String page = wiki.exists(disambiguated) ? disambiguated : selected.name();
+        String pageUrl = WikiUtil.getBaseWikiPageUrl(wiki, page);
+        String attachment = ILLEGAL_FILE_CHARS.matcher(selected.name().replace(' ', '_') ).replaceAll("") + ".png";
+        // Every send needs its own stream over the shared image
+        return channel -> channel.createMessage(message -> message.addFile(attachment, new ByteArrayInputStream(image))
+                .setEmbed(createRetrievalEmbed(embed -> embed.setImage("attachment://" + attachment)
+                        .setTitle(selected.name())
+                        .setUrl(pageUrl))));
+    }
+
+    private static Reply reply(String message) {
+        return channel -> sendMessage(message, channel);
     }
 
-    private InputStream getImage(String fileUrl, Tile tile, Mod mod, int size) {
+    private byte[] getImage(WikiUtil.FileInfo fileInfo, Tile tile, Mod mod, int size) {
+        String fileUrl = fileInfo.url();
+        long revision = getRevision(fileInfo, tile, size);
+        byte[] rendered = this.tileDiskCache == null ? null : this.tileDiskCache.get(tile.id(), revision);
+        if (rendered != null)
+            return rendered;
+
         try {
-            URL url = new URL(fileUrl);
-            BufferedImage originalImage = ImageIO.read(url);
-            if (originalImage == null) {
+            TilesheetCache.Sheet sheet = this.tilesheetCache.get(new TilesheetCache.Key(mod.abbrv(), size, tile.z, fileUrl, fileInfo.sha1()));
+            if (sheet == null) {
                 Bot.LOGGER.warn("Original tilesheet image was null with tile {}, mod {}, and file url {}", tile, mod, fileUrl);
                 return null;
             }
 
             int x = tile.x * size;
             int y = tile.y * size;
-            BufferedImage cropped = Scalr.crop(originalImage, x, y, size, size);
+            BufferedImage cropped = sheet.crop(x, y, size);
             BufferedImage resultImage;
             if (TARGET_SIZE == size) {
                 resultImage = cropped;
@@ -175,12 +198,122 @@ public class GetGridCellCommand extends AbstractCommand {
             }
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             ImageIO.write(resultImage, "png", out);
-            return new ByteArrayInputStream(out.toByteArray());
+            rendered = out.toByteArray();
+            if (this.tileDiskCache != null)
+                this.tileDiskCache.put(tile.id(), revision, rendered);
+            return rendered;
         } catch (IOException | IllegalArgumentException | ImagingOpException e) {
             Bot.LOGGER.error("Error when reading tilesheet image with tile {}, mod {}, and file url {}", tile, mod, fileUrl, e);
             return null;
         }
     }
 
+    /**
+     * Returns a number identifying the tilesheet revision, the position of the tile in it and the rendering settings,
+     * used to key rendered tiles in the disk cache. The position is included because a tile can be moved without
+     * uploading the tilesheet again.
+     */
+    private static long getRevision(WikiUtil.FileInfo fileInfo, Tile tile, int size) {
+        String id = fileInfo.sha1().isEmpty() ? fileInfo.url() : fileInfo.sha1();
+        long hash = 0xCBF29CE484222325L; // 64-bit FNV-1a
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        hash = ((hash * 31 + tile.x()) * 31 + tile.y()) * 31 + tile.z();
+        return (hash * 31 + size) * 31 + TARGET_SIZE;
+    }
+
+    private static Path getTileCacheDirectory() {
+        String directory = System.getenv("TILE_CACHE_DIR");
+        return directory == null ? Path.of("cache", "tiles") : Path.of(directory);
+    }
+
     public record Tile(long id, String mod, String name, int x, int y, int z) {}
+
+    /**
+     * Saves the tile lists and tilesheet sizes of each mod, so that they do not all have to be listed again after a restart.
+     * Entries keep their original timestamps, so they expire and refresh on the same schedule as if there had been no restart.
+     */
+    private final class Snapshot implements SnapshotStore.Participant {
+        @Override
+        public String getSnapshotId() {
+            return "gridCells";
+        }
+
+        @Override
+        public void writeSnapshot(Wiki wiki, DataOutputStream out) throws IOException {
+            record Cached<V>(String mod, V value, long timestamp) {}
+
+            // Mods without a tilesheet are cached as null; they are cheap to look up again, so they are not saved
+            List<Cached<Set<Integer>>> sizes = new ArrayList<>();
+            cachedSizes.forEach((mod, value, timestamp) -> {
+                if (value != null)
+                    sizes.add(new Cached<>(mod, value, timestamp));
+            });
+            out.writeInt(sizes.size());
+            for (Cached<Set<Integer>> cached : sizes) {
+                out.writeUTF(cached.mod());
+                out.writeLong(cached.timestamp());
+                out.writeInt(cached.value().size());
+                for (int size : cached.value()) {
+                    out.writeInt(size);
+                }
+            }
+
+            List<Cached<Map<String, Tile>>> tiles = new ArrayList<>();
+            cachedTiles.forEach((mod, value, timestamp) -> {
+                if (value != null)
+                    tiles.add(new Cached<>(mod, value, timestamp));
+            });
+            out.writeInt(tiles.size());
+            for (Cached<Map<String, Tile>> cached : tiles) {
+                out.writeUTF(cached.mod());
+                out.writeLong(cached.timestamp());
+                out.writeInt(cached.value().size());
+                for (Map.Entry<String, Tile> entry : cached.value().entrySet()) {
+                    Tile tile = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(tile.id());
+                    out.writeUTF(tile.mod());
+                    out.writeUTF(tile.name());
+                    out.writeInt(tile.x());
+                    out.writeInt(tile.y());
+                    out.writeInt(tile.z());
+                }
+            }
+        }
+
+        @Override
+        public void readSnapshot(Wiki wiki, DataInputStream in, long savedAt) throws IOException {
+            long oldest = System.currentTimeMillis() - cachedSizes.getExpiration().toMillis();
+            int sizeCount = in.readInt();
+            for (int i = 0; i < sizeCount; i++) {
+                String mod = in.readUTF();
+                long timestamp = in.readLong();
+                int count = in.readInt();
+                Set<Integer> modSizes = new HashSet<>();
+                for (int j = 0; j < count; j++) {
+                    modSizes.add(in.readInt());
+                }
+                if (timestamp >= oldest)
+                    cachedSizes.put(mod, modSizes, timestamp);
+            }
+
+            oldest = System.currentTimeMillis() - cachedTiles.getExpiration().toMillis();
+            int tileCount = in.readInt();
+            for (int i = 0; i < tileCount; i++) {
+                String mod = in.readUTF();
+                long timestamp = in.readLong();
+                int count = in.readInt();
+                Map<String, Tile> modTiles = new HashMap<>();
+                for (int j = 0; j < count; j++) {
+                    String key = in.readUTF();
+                    modTiles.put(key, new Tile(in.readLong(), in.readUTF(), in.readUTF(), in.readInt(), in.readInt(), in.readInt()));
+                }
+                if (timestamp >= oldest)
+                    cachedTiles.put(mod, modTiles, timestamp);
+            }
+        }
+    }
 }
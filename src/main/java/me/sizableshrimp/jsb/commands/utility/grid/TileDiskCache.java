@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.commands.utility.grid;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A persistent cache of rendered tile images that survives restarts.
+ * <p>
+ * Encoded images are appended to a data file. A fixed-size open-addressing hash table stored in a separate index file
+ * is memory-mapped to locate the image for a (tile id, revision) pair, so a hit costs one index probe and one positional
+ * read of the data file. The data is forced to disk before its index slot is written, so a crash can only leave
+ * unreferenced bytes behind.
+ * <p>
+ * Only the latest revision of a tile is kept; storing a new revision removes the older ones. Once less than half of the
+ * data file is still referenced, the live images are copied to a new data file, and if the live images alone exceed
+ * the byte budget, the cache starts over. The index names the data file it belongs to by a generation number and is
+ * replaced atomically, so the index and data always match after a crash.
+ */
+final class TileDiskCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TileDiskCache.class);
+    private static final int MAGIC = 0x4A534254; // JSBT
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 24;
+    private static final int SLOT_BYTES = 32;
+    private static final int INITIAL_CAPACITY = 1 << 14;
+    private static final double MAX_LOAD = 0.7;
+    private static final double MIN_LIVE_RATIO = 0.5;
+    private static final long MIN_COMPACT_BYTES = 4L * 1024 * 1024;
+    private static final int EMPTY = 0;
+    private static final int USED = 1;
+    private static final int REMOVED = 2;
+    private final Path directory;
+    private final Path indexPath;
+    private final long maxBytes;
+    private FileChannel dataChannel;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private long generation;
+    private int capacity;
+    // Slots that are not empty, including removed ones, which still take part in probing
+    private int occupied;
+    private int count;
+    private long liveBytes;
+
+    private TileDiskCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.indexPath = directory.resolve("tiles.idx");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Opens the cache in the given directory, creating it if needed.
+     *
+     * @param directory The directory to store the index and data files in.
+     * @param maxBytes The maximum number of bytes of images to keep.
+     * @return The opened cache, or null if it could not be opened.
+     */
+    static TileDiskCache open(Path directory, long maxBytes) {
+        TileDiskCache cache = new TileDiskCache(directory, maxBytes);
+        try {
+            Files.createDirectories(directory);
+            cache.openIndex();
+            cache.deleteStaleDataFiles();
+            LOGGER.info("Opened tile disk cache at {} with {} entries ({} KiB)", directory.toAbsolutePath(), cache.count, cache.liveBytes / 1024);
+            return cache;
+        } catch (IOException e) {
+            LOGGER.warn("Could not open tile disk cache at {}; rendered tiles will not be persisted", directory.toAbsolutePath(), e);
+            cache.close();
+            return null;
+        }
+    }
+
+    /**
+     * Get the encoded image stored for the tile at the revision.
+     *
+     * @param tileId The id of the tile.
+     * @param revision A number identifying the tilesheet revision and rendering settings the image was created with.
+     * @return The encoded image, or null if it is not cached.
+     */
+    synchronized byte[] get(long tileId, long revision) {
+        if (this.index == null)
+            return null;
+
+        int slot = findSlot(tileId, revision);
+        if (getState(slot) != USED)
+            return null;
+
+        int position = slotPosition(slot);
+        long offset = this.index.getLong(position + 16);
+        int length = this.index.getInt(position + 24);
+        try {
+            return read(this.dataChannel, offset, length);
+        } catch (IOException e) {
+            LOGGER.warn("Could not read tile {} at revision {} from the disk cache", tileId, revision, e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the encoded image for the tile at the revision, if it is not already stored.
+     * Any other revision of the tile is removed.
+     *
+     * @param tileId The id of the tile.
+     * @param revision A number identifying the tilesheet revision and rendering settings the image was created with.
+     * @param image The encoded image.
+     */
+    synchronized void put(long tileId, long revision, byte[] image) {
+        if (this.index == null || image.length > this.maxBytes)
+            return;
+
+        try {
+            if (getState(findSlot(tileId, revision)) == USED)
+                return;
+
+            removeOtherRevisions(tileId, revision);
+            long dataSize = this.dataChannel.size();
+            if (this.liveBytes + image.length > this.maxBytes) {
+                LOGGER.info("Tile disk cache reached its budget of {} KiB; starting over", this.maxBytes / 1024);
+                rebuild(INITIAL_CAPACITY, false);
+            } else if (dataSize > MIN_COMPACT_BYTES && this.liveBytes < dataSize * MIN_LIVE_RATIO) {
+                rebuild(getCapacityFor(this.count + 1), true);
+            } else if (this.occupied + 1 > this.capacity * MAX_LOAD) {
+                rebuild(getCapacityFor(this.count + 1), true);
+            }
+
+            long offset = this.dataChannel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(image);
+            while (buffer.hasRemaining()) {
+                this.dataChannel.write(buffer, offset + buffer.position());
+            }
+            // The index is mapped, so its pages can reach the disk before the data unless the data is forced first
+            this.dataChannel.force(false);
+
+            int slot = findSlot(tileId, revision);
+            writeSlot(this.index, slotPosition(slot), tileId, revision, offset, image.length);
+            this.occupied++;
+            this.count++;
+            this.liveBytes += image.length;
+        } catch (IOException e) {
+            LOGGER.warn("Could not write tile {} at revision {} to the disk cache", tileId, revision, e);
+        }
+    }
+
+    synchronized int size() {
+        return this.count;
+    }
+
+    synchronized void close() {
+        try {
+            if (this.index != null)
+                this.index.force();
+            if (this.indexChannel != null)
+                this.indexChannel.close();
+            if (this.dataChannel != null)
+                this.dataChannel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error when closing tile disk cache", e);
+        }
+        this.index = null;
+    }
+
+    private void openIndex() throws IOException {
+        this.indexChannel = FileChannel.open(this.indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (this.indexChannel.size() >= HEADER_BYTES) {
+            MappedByteBuffer header = this.indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            long generation = header.getLong(8);
+            int capacity = header.getInt(16);
+            Path dataPath = getDataPath(generation);
+            if (header.getInt(0) == MAGIC && header.getInt(4) == VERSION && capacity > 0 && Integer.bitCount(capacity) == 1
+                    && this.indexChannel.size() == HEADER_BYTES + (long) capacity * SLOT_BYTES && Files.exists(dataPath)) {
+                this.generation = generation;
+                this.capacity = capacity;
+                this.index = this.indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, this.indexChannel.size());
+                this.dataChannel = FileChannel.open(dataPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                countSlots();
+                return;
+            }
+            LOGGER.warn("Tile disk cache index at {} is invalid; starting a new cache", this.indexPath.toAbsolutePath());
+        }
+
+        // New or invalid index; the old data is unreachable without it
+        this.indexChannel.close();
+        this.indexChannel = null;
+        this.generation = 0;
+        rebuild(INITIAL_CAPACITY, false);
+    }
+
+    /**
+     * Replaces the index with one of the given capacity and the data file with a new generation.
+     * Removed slots are dropped, and the live images are copied over only if {@code keep} is true.
+     * Both files are forced before the index is moved into place.
+     */
+    private void rebuild(int newCapacity, boolean keep) throws IOException {
+        long newGeneration = this.generation + 1;
+        Path newDataPath = getDataPath(newGeneration);
+        Path tempPath = this.directory.resolve("tiles.idx.tmp");
+        FileChannel newData = FileChannel.open(newDataPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int newCount = 0;
+        long newBytes = 0;
+        try (FileChannel tempChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer newIndex = createIndex(tempChannel, newGeneration, newCapacity);
+            for (int slot = 0; keep && slot < this.capacity; slot++) {
+                if (getState(slot) != USED)
+                    continue;
+                int position = slotPosition(slot);
+                long tileId = this.index.getLong(position);
+                long revision = this.index.getLong(position + 8);
+                byte[] image = read(this.dataChannel, this.index.getLong(position + 16), this.index.getInt(position + 24));
+                if (image == null)
+                    continue;
+
+                ByteBuffer buffer = ByteBuffer.wrap(image);
+                while (buffer.hasRemaining()) {
+                    newData.write(buffer, newBytes + buffer.position());
+                }
+                int newSlot = probe(newIndex, newCapacity, tileId, revision);
+                writeSlot(newIndex, slotPosition(newSlot), tileId, revision, newBytes, image.length);
+                newCount++;
+                newBytes += image.length;
+            }
+            newData.force(false);
+            newIndex.force();
+        } catch (IOException | RuntimeException e) {
+            newData.close();
+            Files.deleteIfExists(newDataPath);
+            throw e;
+        }
+
+        if (this.indexChannel != null)
+            this.indexChannel.close();
+        Files.move(tempPath, this.indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.indexChannel = FileChannel.open(this.indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.index = this.indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, this.indexChannel.size());
+
+        if (this.dataChannel != null) {
+            this.dataChannel.close();
+            Files.deleteIfExists(getDataPath(this.generation));
+        }
+        this.dataChannel = newData;
+        this.generation = newGeneration;
+        this.capacity = newCapacity;
+        this.occupied = newCount;
+        this.count = newCount;
+        this.liveBytes = newBytes;
+    }
+
+    /**
+     * Marks every other revision of the tile as removed. All revisions of a tile share a probe sequence,
+     * so only that sequence has to be searched.
+     */
+    private void removeOtherRevisions(long tileId, long revision) {
+        int slot = homeSlot(tileId, this.capacity);
+        int state;
+        while ((state = getState(slot)) != EMPTY) {
+            int position = slotPosition(slot);
+            if (state == USED && this.index.getLong(position) == tileId && this.index.getLong(position + 8) != revision) {
+                this.index.putInt(position + 28, REMOVED);
+                this.count--;
+                this.liveBytes -= this.index.getInt(position + 24);
+            }
+            slot = (slot + 1) & (this.capacity - 1);
+        }
+    }
+
+    private void countSlots() {
+        for (int slot = 0; slot < this.capacity; slot++) {
+            int state = getState(slot);
+            if (state != EMPTY)
+                this.occupied++;
+            if (state == USED) {
+                this.count++;
+                this.liveBytes += this.index.getInt(slotPosition(slot) + 24);
+            }
+        }
+    }
+
+    // Data files of other generations are left behind by a crash during a rebuild, or belong to an older format
+    private void deleteStaleDataFiles() throws IOException {
+        Path current = getDataPath(this.generation);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "tiles*.dat")) {
+            for (Path path : stream) {
+                if (!path.getFileName().equals(current.getFileName()))
+                    Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Path getDataPath(long generation) {
+        return this.directory.resolve("tiles-" + generation + ".dat");
+    }
+
+    private int findSlot(long tileId, long revision) {
+        return probe(this.index, this.capacity, tileId, revision);
+    }
+
+    private int getState(int slot) {
+        return this.index.getInt(slotPosition(slot) + 28);
+    }
+
+    private static int getCapacityFor(int entries) {
+        int capacity = INITIAL_CAPACITY;
+        while (entries > capacity * MAX_LOAD / 2) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns the bytes at the offset, or null if the data file is too short to contain them.
+     */
+    private static byte[] read(FileChannel channel, long offset, int length) throws IOException {
+        if (offset + length > channel.size())
+            return null; // The data file was truncated
+
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                return null;
+        }
+        return bytes;
+    }
+
+    private static MappedByteBuffer createIndex(FileChannel channel, long generation, int capacity) throws IOException {
+        MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * SLOT_BYTES);
+        index.putInt(0, MAGIC);
+        index.putInt(4, VERSION);
+        index.putLong(8, generation);
+        index.putInt(16, capacity);
+        return index;
+    }
+
+    /**
+     * Returns the slot holding the key, or the first empty slot in its probe sequence.
+     * Removed slots are skipped rather than reused, since the probe sequence of other keys can pass through them.
+     */
+    private static int probe(MappedByteBuffer index, int capacity, long tileId, long revision) {
+        int slot = homeSlot(tileId, capacity);
+        while (true) {
+            int position = slotPosition(slot);
+            int state = index.getInt(position + 28);
+            if (state == EMPTY || (state == USED && index.getLong(position) == tileId && index.getLong(position + 8) == revision))
+                return slot;
+            slot = (slot + 1) & (capacity - 1);
+        }
+    }
+
+    // Only the tile id is hashed so that all revisions of a tile are found along the same probe sequence
+    private static int homeSlot(long tileId, int capacity) {
+        return Long.hashCode(tileId * 0x9E3779B97F4A7C15L) & (capacity - 1);
+    }
+
+    private static void writeSlot(MappedByteBuffer index, int position, long tileId, long revision, long offset, int length) {
+        index.putLong(position, tileId);
+        index.putLong(position + 8, revision);
+        index.putLong(position + 16, offset);
+        index.putInt(position + 24, length);
+        // Mark the slot as used last so a partially written slot is never read
+        index.putInt(position + 28, USED);
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+}
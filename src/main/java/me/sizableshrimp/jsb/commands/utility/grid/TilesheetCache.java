@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.commands.utility.grid;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Caches decoded tilesheet images as packed ARGB rasters so that repeated lookups from the same tilesheet
+ * only need to crop and encode a tile instead of downloading and decoding the whole sheet again.
+ * Sheets are evicted in least recently used order once the total raster size passes the byte budget.
+ */
+final class TilesheetCache {
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Sheet> sheets = new LinkedHashMap<>(16, 0.75F, true);
+    private final Map<Key, CompletableFuture<Sheet>> loading = new HashMap<>();
+    private long usedBytes;
+
+    TilesheetCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the decoded tilesheet for the key, downloading it if it is not cached.
+     * Concurrent callers requesting the same sheet share a single download.
+     *
+     * @param key The tilesheet to get.
+     * @return The decoded tilesheet, or null if the image could not be decoded.
+     * @throws IOException if the tilesheet could not be downloaded.
+     */
+    Sheet get(Key key) throws IOException {
+        CompletableFuture<Sheet> future;
+        boolean owner = false;
+        synchronized (this) {
+            Sheet sheet = this.sheets.get(key);
+            if (sheet != null)
+                return sheet;
+
+            future = this.loading.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                this.loading.put(key, future);
+                owner = true;
+            }
+        }
+
+        if (!owner)
+            return join(future);
+
+        try {
+            Sheet sheet = download(key.url());
+            if (sheet != null)
+                put(key, sheet);
+            future.complete(sheet);
+            return sheet;
+        } catch (IOException | RuntimeException | Error e) {
+            // Waiters would block forever if the future were left incomplete, e.g. after running out of memory while decoding
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (this) {
+                this.loading.remove(key);
+            }
+        }
+    }
+
+    synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    synchronized int size() {
+        return this.sheets.size();
+    }
+
+    private synchronized void put(Key key, Sheet sheet) {
+        // Older revisions of the same tilesheet will never be requested again
+        Iterator<Map.Entry<Key, Sheet>> iterator = this.sheets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Sheet> entry = iterator.next();
+            if (entry.getKey().isSameSheet(key)) {
+                this.usedBytes -= entry.getValue().bytes();
+                iterator.remove();
+            }
+        }
+
+        if (sheet.bytes() > this.maxBytes)
+            return; // Too big to ever fit
+
+        Sheet prev = this.sheets.put(key, sheet);
+        if (prev != null)
+            this.usedBytes -= prev.bytes();
+        this.usedBytes += sheet.bytes();
+
+        Iterator<Sheet> eldest = this.sheets.values().iterator();
+        while (this.usedBytes > this.maxBytes && eldest.hasNext()) {
+            this.usedBytes -= eldest.next().bytes();
+            eldest.remove();
+        }
+    }
+
+    private static Sheet download(String fileUrl) throws IOException {
+        BufferedImage image = ImageIO.read(new URL(fileUrl));
+        if (image == null)
+            return null;
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        return new Sheet(width, height, image.getRGB(0, 0, width, height, null, 0, width));
+    }
+
+    private static Sheet join(CompletableFuture<Sheet> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io)
+                throw io;
+            if (cause instanceof RuntimeException runtime)
+                throw runtime;
+            if (cause instanceof Error error)
+                throw error;
+            throw new UncheckedIOException(new IOException(cause));
+        }
+    }
+
+    /**
+     * Identifies a single revision of a tilesheet image.
+     *
+     * @param mod The mod abbreviation.
+     * @param size The pixel size of each tile.
+     * @param z The z-index of the tilesheet.
+     * @param url The url of the latest file revision.
+     * @param sha1 The SHA-1 hash of the latest file revision.
+     */
+    record Key(String mod, int size, int z, String url, String sha1) {
+        private boolean isSameSheet(Key other) {
+            return this.size == other.size && this.z == other.z && this.mod.equals(other.mod);
+        }
+    }
+
+    /**
+     * A decoded tilesheet stored as packed ARGB pixels in row-major order.
+     */
+    record Sheet(int width, int height, int[] pixels) {
+        long bytes() {
+            return (long) this.pixels.length * Integer.BYTES;
+        }
+
+        /**
+         * Copy a square region of the sheet into a new image.
+         *
+         * @throws IllegalArgumentException if the region is outside of the sheet.
+         */
+        BufferedImage crop(int x, int y, int size) {
+            if (x < 0 || y < 0 || x + size > this.width || y + size > this.height)
+                throw new IllegalArgumentException("Tile at (%d, %d) with size %d is outside of the %dx%d tilesheet".formatted(x, y, size, this.width, this.height));
+
+            BufferedImage cropped = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            cropped.setRGB(0, 0, size, size, this.pixels, y * this.width + x, this.width);
+            return cropped;
+        }
+    }
+}
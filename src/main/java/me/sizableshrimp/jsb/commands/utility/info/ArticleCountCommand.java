@@ -28,16 +28,10 @@ import me.sizableshrimp.jsb.api.CommandContext;
 import me.sizableshrimp.jsb.api.CommandInfo;
 import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.commands.AbstractCommand;
-import me.sizableshrimp.jsb.data.Language;
-import me.sizableshrimp.jsb.util.CachedData;
-import org.fastily.jwiki.core.NS;
+import me.sizableshrimp.jsb.data.ArticleCounter;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
-
 public class ArticleCountCommand extends AbstractCommand {
-    private final CachedData<Integer> cachedArticleCount = new CachedData<>();
-
     @Override
     public CommandInfo getInfo(CommandContext context) {
         return new CommandInfo(this, "%cmdname%", "Gets the current number of articles on the wiki in the main namespace.");
@@ -51,12 +45,7 @@ public class ArticleCountCommand extends AbstractCommand {
     @Override
     public Mono<Message> run(CommandContext context, MessageCreateEvent event, Args args) {
         return event.getMessage().getChannel().flatMap(channel -> {
-            int articleCount = this.cachedArticleCount.getOrRetrieve(() -> {
-                List<String> allPages = context.wiki().allPages("", false, false, -1, NS.MAIN);
-                allPages.removeIf(page -> Language.getByTitle(context.wiki(), page) != null);
-                return allPages.size();
-            });
-
+            int articleCount = ArticleCounter.getCount(context.wiki());
             return sendMessage("The current article count on the wiki is: **%,d**".formatted(articleCount), channel);
         });
     }
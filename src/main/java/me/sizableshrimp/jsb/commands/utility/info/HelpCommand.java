@@ -36,7 +36,6 @@ import me.sizableshrimp.jsb.api.CommandInfo;
 import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.args.ArgsProcessor;
 import me.sizableshrimp.jsb.commands.AbstractCommand;
-import org.springframework.util.StringUtils;
 import reactor.core.publisher.Mono;
 
 import java.util.function.Consumer;
@@ -106,7 +105,8 @@ public class HelpCommand extends AbstractCommand {
         Multimap<String, String> commandMap = context.commandManager().getCommands().stream()
                 .collect(Multimaps.toMultimap(c -> {
                     String packageName = c.getClass().getPackageName();
-                    return StringUtils.capitalize(packageName.substring(packageName.lastIndexOf('.') + 1));
+                    String category = packageName.substring(packageName.lastIndexOf('.') + 1);
+                    return category.isEmpty() ? category : Character.toUpperCase(category.charAt(0)) + category.substring(1);
                 }, Command::getName, TreeMultimap::create));
 
         Consumer<EmbedCreateSpec> spec = display("help", this, context);
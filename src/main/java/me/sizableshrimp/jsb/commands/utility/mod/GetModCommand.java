@@ -27,15 +27,21 @@ import discord4j.core.object.entity.Message;
 import discord4j.core.object.entity.channel.MessageChannel;
 import me.sizableshrimp.jsb.api.CommandContext;
 import me.sizableshrimp.jsb.api.CommandInfo;
+import me.sizableshrimp.jsb.api.Reply;
 import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.commands.AbstractCommand;
 import me.sizableshrimp.jsb.data.Language;
 import me.sizableshrimp.jsb.data.Mod;
+import org.fastily.jwiki.core.Wiki;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class GetModCommand extends AbstractCommand {
+    private static final int MAX_SUGGESTIONS = 3;
+
     @Override
     public CommandInfo getInfo(CommandContext context) {
         return new CommandInfo(this, "%cmdname% <mod name|mod abbreviation> [language code]",
@@ -58,38 +64,67 @@ public class GetModCommand extends AbstractCommand {
             return incorrectUsage(context, event);
         }
 
-        return event.getMessage().getChannel().flatMap(channel -> {
-            String modInput = args.getJoinedArgs();
-            Mod mod = Mod.getByInfo(context.wiki(), modInput);
-            if (mod != null) {
-                return formatModMessage(channel, mod, null);
-            } else if (args.getLength() == 1) {
-                return formatModDoesntExistMessage(channel, modInput);
-            }
-
-            String langInput = args.getArgRange(args.getLength() - 1);
-            Language language = Language.getByCode(context.wiki(), langInput);
-
-            modInput = args.getArgRange(0, args.getLength() - 1);
-            mod = Mod.getByInfo(context.wiki(), modInput);
-
-            if (mod == null && language == null) {
-                return formatModDoesntExistMessage(channel, args.getJoinedArgs());
-            } else if (mod == null) {
-                return formatModDoesntExistMessage(channel, modInput);
-            } else if (language == null) {
-                return sendMessage(String.format("The language specified (`%s`) does not exist.", langInput), channel);
-            }
-
-            return formatModMessage(channel, mod, language);
-        });
+        // Identical lookups running at the same time share one result
+        return context.commandManager().coalesce(this, args.getJoinedArgs(), () -> getReply(context.wiki(), args))
+                .flatMap(reply -> event.getMessage().getChannel().flatMap(reply::send));
+    }
+
+    private static Reply getReply(Wiki wiki, Args args) {
+        String modInput = args.getJoinedArgs();
+        Mod mod = Mod.getByInfo(wiki, modInput);
+        if (mod != null) {
+            return reply(formatMod(mod, null));
+        } else if (args.getLength() == 1) {
+            return reply(formatModDoesntExist(wiki, modInput));
+        }
+
+        String langInput = args.getArgRange(args.getLength() - 1);
+        Language language = Language.getByCode(wiki, langInput);
+
+        modInput = args.getArgRange(0, args.getLength() - 1);
+        mod = Mod.getByInfo(wiki, modInput);
+
+        if (mod == null && language == null) {
+            return reply(formatModDoesntExist(wiki, args.getJoinedArgs()));
+        } else if (mod == null) {
+            return reply(formatModDoesntExist(wiki, modInput));
+        } else if (language == null) {
+            return reply(String.format("The language specified (`%s`) does not exist.", langInput));
+        }
+
+        return reply(formatMod(mod, language));
+    }
+
+    private static Reply reply(String message) {
+        return channel -> sendMessage(message, channel);
+    }
+
+    public static Mono<Message> formatModDoesntExistMessage(MessageChannel channel, Wiki wiki, String modInput) {
+        return sendMessage(formatModDoesntExist(wiki, modInput), channel);
+    }
+
+    public static String formatModDoesntExist(Wiki wiki, String modInput) {
+        return String.format("The mod specified (**%s**) does not exist.", modInput) + formatSuggestions(wiki, modInput);
     }
 
-    public static Mono<Message> formatModDoesntExistMessage(MessageChannel channel, String modInput) {
-        return sendMessage(String.format("The mod specified (**%s**) does not exist.", modInput), channel);
+    /**
+     * Formats a "did you mean" sentence listing mods that resemble the input, including a leading space.
+     *
+     * @param wiki The {@link Wiki} to look up mods in.
+     * @param modInput The unlocalized mod name or abbreviation that could not be found.
+     * @return The formatted suggestions, or an empty string if there are none.
+     */
+    public static String formatSuggestions(Wiki wiki, String modInput) {
+        List<Mod> suggestions = Mod.getSuggestions(wiki, modInput, MAX_SUGGESTIONS);
+        if (suggestions.isEmpty())
+            return "";
+
+        return suggestions.stream()
+                .map(mod -> String.format("**%s** (`%s`)", mod.name(), mod.abbrv()))
+                .collect(Collectors.joining(", ", " Did you mean ", "?"));
     }
 
-    public static Mono<Message> formatModMessage(MessageChannel channel, Mod mod, Language language) {
+    private static String formatMod(Mod mod, Language language) {
         String link = '<' + mod.getUrlLink() + '>';
         String formatted = String.format("**%s** (abbreviated as `%s`) can be found at %s.", mod.name(), mod.abbrv(), link);
 
@@ -98,6 +133,6 @@ public class GetModCommand extends AbstractCommand {
             formatted = formatted + '\n' + localized;
         }
 
-        return sendMessage(formatted, channel);
+        return formatted;
     }
 }
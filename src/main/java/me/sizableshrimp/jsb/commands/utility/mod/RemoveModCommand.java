@@ -98,7 +98,7 @@ public class RemoveModCommand extends ConfirmationCommand<RemoveModCommand.Confi
         return event.getMessage().getChannel().flatMap(channel -> {
             Mod toDelete = Mod.getByInfo(context.wiki(), args.getJoinedArgs());
             if (toDelete == null) {
-                return sendMessage("That mod doesn't exist!", channel);
+                return sendMessage("That mod doesn't exist!" + GetModCommand.formatSuggestions(context.wiki(), args.getJoinedArgs()), channel);
             }
 
             Mono<Message> confirm;
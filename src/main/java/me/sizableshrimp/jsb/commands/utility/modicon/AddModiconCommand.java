@@ -28,6 +28,7 @@ import me.sizableshrimp.jsb.api.CommandContext;
 import me.sizableshrimp.jsb.api.CommandInfo;
 import me.sizableshrimp.jsb.api.ConfirmationCommand;
 import me.sizableshrimp.jsb.args.Args;
+import me.sizableshrimp.jsb.commands.utility.mod.GetModCommand;
 import me.sizableshrimp.jsb.data.BaseConfirmationContext;
 import me.sizableshrimp.jsb.data.Mod;
 import me.sizableshrimp.jsb.util.MessageUtil;
@@ -113,8 +114,11 @@ public class AddModiconCommand extends ConfirmationCommand<AddModiconCommand.Con
             String message = mod == null
                     ? "A mod with the name **%s** does not exist in the mods list, would you like to still add a new modicon to the wiki for it?"
                     : "Do you want to add a new modicon to the wiki for **%s**?";
+            message = message.formatted(modName);
+            if (mod == null)
+                message += GetModCommand.formatSuggestions(context.wiki(), modInput);
 
-            return sendMessage(message.formatted(modName), channel)
+            return sendMessage(message, channel)
                     .flatMap(m -> addReactions(m, new ConfirmationContext(context.wiki(), event.getMessage(), m, modName, url, destination)));
         });
     }
@@ -24,15 +24,16 @@ package me.sizableshrimp.jsb.commands.utility.modicon;
 
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.Message;
-import discord4j.core.object.entity.channel.MessageChannel;
 import me.sizableshrimp.jsb.api.CommandContext;
 import me.sizableshrimp.jsb.api.CommandInfo;
+import me.sizableshrimp.jsb.api.Reply;
 import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.commands.AbstractCommand;
 import me.sizableshrimp.jsb.commands.utility.mod.GetModCommand;
 import me.sizableshrimp.jsb.data.Mod;
 import me.sizableshrimp.jsb.util.WikiUtil;
 import org.fastily.jwiki.core.QTemplate;
+import org.fastily.jwiki.core.Wiki;
 import org.fastily.jwiki.util.FL;
 import reactor.core.publisher.Mono;
 
@@ -63,36 +64,40 @@ public class GetModiconCommand extends AbstractCommand {
             return incorrectUsage(context, event);
         }
 
-        return event.getMessage().getChannel().flatMap(channel -> {
-            String modInput = args.getJoinedArgs();
-            Mod mod = Mod.getByInfo(context.wiki(), modInput);
+        // Identical lookups running at the same time share one result
+        return context.commandManager().coalesce(this, args.getJoinedArgs(), () -> getReply(context.wiki(), args.getJoinedArgs()))
+                .flatMap(reply -> event.getMessage().getChannel().flatMap(reply::send));
+    }
 
-            if (mod == null) {
-                return GetModCommand.formatModDoesntExistMessage(channel, modInput);
-            }
+    private static Reply getReply(Wiki wiki, String modInput) {
+        Mod mod = Mod.getByInfo(wiki, modInput);
+        if (mod == null) {
+            String message = GetModCommand.formatModDoesntExist(wiki, modInput);
+            return channel -> sendMessage(message, channel);
+        }
 
-            String file = String.format("File:Modicon %s.gif", mod.name());
-            String link = WikiUtil.getBaseWikiPageUrl(context.wiki(), file);
-            if (!context.wiki().exists(file)) {
-                file = file.substring(0, file.length() - 3) + "png";
-                link = WikiUtil.getBaseWikiPageUrl(context.wiki(), file);
-            }
-            if (!context.wiki().exists(file))
-                return noModiconFound(channel, mod, link);
-            String fileUrl = WikiUtil.getLatestFileUrl(context.wiki(), file);
+        String file = String.format("File:Modicon %s.gif", mod.name());
+        String link = WikiUtil.getBaseWikiPageUrl(wiki, file);
+        if (!wiki.exists(file)) {
+            file = file.substring(0, file.length() - 3) + "png";
+            link = WikiUtil.getBaseWikiPageUrl(wiki, file);
+        }
+        if (!wiki.exists(file))
+            return noModiconFound(mod, link);
+        String fileUrl = WikiUtil.getLatestFileUrl(wiki, file);
 
-            if (fileUrl == null) // It is missing
-                return noModiconFound(channel, mod, link);
+        if (fileUrl == null) // It is missing
+            return noModiconFound(mod, link);
 
-            String finalFile = file;
-            String finalLink = link;
-            return sendEmbed(createRetrievalEmbed(embed -> embed.setImage(fileUrl)
-                    .setTitle(finalFile)
-                    .setUrl(finalLink)), channel);
-        });
+        String finalFile = file;
+        String finalLink = link;
+        return channel -> sendEmbed(createRetrievalEmbed(embed -> embed.setImage(fileUrl)
+                .setTitle(finalFile)
+                .setUrl(finalLink)), channel);
     }
 
-    private static Mono<Message> noModiconFound(MessageChannel channel, Mod mod, String link) {
-        return sendMessage(String.format("A modicon for **%s** does not exist at <%s>.", mod.name(), link), channel);
+    private static Reply noModiconFound(Mod mod, String link) {
+        String message = String.format("A modicon for **%s** does not exist at <%s>.", mod.name(), link);
+        return channel -> sendMessage(message, channel);
     }
 }
@@ -6,16 +6,12 @@ import me.sizableshrimp.jsb.api.CommandContext;
 import me.sizableshrimp.jsb.api.CommandInfo;
 import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.commands.AbstractCommand;
-import me.sizableshrimp.jsb.data.Language;
 import me.sizableshrimp.jsb.listeners.PagerListener;
 import me.sizableshrimp.jsb.util.WikiUtil;
 import org.fastily.jwiki.core.NS;
 import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 public class GetSubpagesCommand extends AbstractCommand {
     @Override
@@ -41,40 +37,17 @@ public class GetSubpagesCommand extends AbstractCommand {
             return incorrectUsage(context, event);
         }
 
-        return event.getMessage().getChannel().flatMap(channel -> {
-            String fullPage = context.wiki().normalizeTitle(args.getJoinedArgs());
-            NS ns = context.wiki().whichNS(fullPage);
-            String prefix = context.wiki().nss(fullPage);
-            List<String> temp = context.wiki().allPages(prefix, false, false, -1, ns);
-            temp.removeIf(page -> Language.getByTitle(context.wiki(), page) != null);
-
-            if (temp.isEmpty())
-                return sendMessage("The returned list of pages was empty.", channel);
-
-            String complete = "- " + temp.stream().map(s -> {
-                int index = s.indexOf(':');
-                return index == -1 ? s : s.substring(index + 1);
-            }).collect(Collectors.joining("\n- "));
-
-            String specialPage = "Special:PrefixIndex/" + fullPage;
-            String url = WikiUtil.getBaseWikiPageUrl(context.wiki(), specialPage);
-            List<String> pages = new ArrayList<>();
-
-            int index = complete.indexOf('\n');
-            int count = 1; // Include the one we just calculated
-            while (index >= 0) {
-                if (count == 20) {
-                    pages.add(complete.substring(0, index + 1));
-                    complete = complete.substring(index + 1);
-                    count = 0;
-                    index = 0;
-                }
-                index = complete.indexOf('\n', index + 1);
-                count++;
-            }
-            pages.add(complete);
-
-            return PagerListener.sendInitialPageMessage(channel, new PagerListener.PageData(pages, event.getMessage().getAuthor().get().getId()), specialPage, url);
-        });
+        String fullPage = context.wiki().normalizeTitle(args.getJoinedArgs());
+        NS ns = context.wiki().whichNS(fullPage);
+        String prefix = context.wiki().nss(fullPage);
+        // Only the batches needed for the first page are loaded now, the rest are loaded as the user pages forward
+        PrefixIndexPageSource source = new PrefixIndexPageSource(context.wiki(), prefix, ns);
+        if (source.getPage(0) == null)
+            return event.getMessage().getChannel().flatMap(channel -> sendMessage("The returned list of pages was empty.", channel));
+
+        String specialPage = "Special:PrefixIndex/" + fullPage;
+        String url = WikiUtil.getBaseWikiPageUrl(context.wiki(), specialPage);
+        return event.getMessage().getChannel().flatMap(channel -> PagerListener.sendInitialPageMessage(channel, source,
+                event.getMessage().getAuthor().get().getId(), specialPage, url));
     }
 }
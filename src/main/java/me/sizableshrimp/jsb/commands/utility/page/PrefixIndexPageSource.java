@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.commands.utility.page;
+
+import com.google.gson.JsonObject;
+import me.sizableshrimp.jsb.data.Language;
+import me.sizableshrimp.jsb.listeners.PageSource;
+import org.fastily.jwiki.core.NS;
+import org.fastily.jwiki.core.QReply;
+import org.fastily.jwiki.core.QTemplate;
+import org.fastily.jwiki.core.WQuery;
+import org.fastily.jwiki.core.Wiki;
+import org.fastily.jwiki.util.FL;
+import org.fastily.jwiki.util.GSONP;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the pages starting with a prefix, excluding translated pages, one {@code list=allpages} batch at a time.
+ */
+class PrefixIndexPageSource extends PageSource {
+    private static final int LINES_PER_PAGE = 20;
+    private static final QTemplate ALL_PAGES = new QTemplate(FL.pMap("list", "allpages"), "aplimit", "allpages");
+    private final Wiki wiki;
+    private final WQuery query;
+
+    PrefixIndexPageSource(Wiki wiki, String prefix, NS ns) {
+        super(LINES_PER_PAGE);
+        this.wiki = wiki;
+        this.query = new WQuery(wiki, -1, ALL_PAGES)
+                .set("apprefix", prefix)
+                .set("apnamespace", Integer.toString(ns.v));
+    }
+
+    @Override
+    protected List<String> loadLines() {
+        if (!this.query.has())
+            return null;
+        QReply reply = this.query.next();
+        if (reply == null)
+            return null;
+
+        List<String> lines = new ArrayList<>();
+        for (JsonObject page : reply.listComp("allpages")) {
+            String title = GSONP.getStr(page, "title");
+            if (Language.getByTitle(this.wiki, title) != null)
+                continue;
+
+            int index = title.indexOf(':');
+            lines.add("- " + (index == -1 ? title : title.substring(index + 1)));
+        }
+        return lines;
+    }
+}
@@ -22,6 +22,8 @@
 
 package me.sizableshrimp.jsb.commands.utility.page;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.Message;
 import me.sizableshrimp.jsb.api.CommandContext;
@@ -31,16 +33,21 @@ import me.sizableshrimp.jsb.args.Args;
 import me.sizableshrimp.jsb.data.BaseConfirmationContext;
 import me.sizableshrimp.jsb.util.MessageUtil;
 import me.sizableshrimp.jsb.util.Reactions;
+import me.sizableshrimp.jsb.util.WikiUtil;
 import org.fastily.jwiki.core.AReply;
 import org.fastily.jwiki.core.Wiki;
-import org.fastily.jwiki.dwrap.Revision;
+import org.fastily.jwiki.util.FL;
+import org.fastily.jwiki.util.GSONP;
 import reactor.core.publisher.Mono;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 public class RevertEditCommand extends ConfirmationCommand<RevertEditCommand.ConfirmationContext> {
+    private static final int REVISION_BATCH_SIZE = 20;
+
     public RevertEditCommand() {
         super(Map.of(
                 Reactions.CHECKMARK, (confirmation, event) -> event.getChannel().flatMap(channel -> {
@@ -48,14 +55,18 @@ public class RevertEditCommand extends ConfirmationCommand<RevertEditCommand.Con
                     if (invalidMessage != null)
                         return sendMessage(invalidMessage, channel);
 
-                    Revision latest = getLatestRev(confirmation.wiki(), confirmation.page());
-                    if (!confirmation.latest().equals(latest))
+                    if (WikiUtil.getLatestRevisionId(confirmation.wiki(), confirmation.page()) != confirmation.latestRevid())
                         return sendMessage("The page has had new edits since you requested to revert it! Please try again.", channel);
 
+                    // Only the revision being restored needs its content
+                    String text = WikiUtil.getRevisionText(confirmation.wiki(), confirmation.revertHereRevid());
+                    if (text == null)
+                        return sendMessage("An error occurred when trying to get the revision to revert **%s** to.".formatted(confirmation.page()), channel);
+
                     return event.getClient().getUserById(confirmation.authorId()).flatMap(user -> {
                         String reason = "Reverted edits by [[Special:Contribs/%s|%<s]] ([[User talk:%<s|talk]])%s, requested by %s."
                                 .formatted(confirmation.user(), confirmation.reason(), MessageUtil.getUsernameDiscriminator(user));
-                        AReply reply = confirmation.wiki().edit(confirmation.page(), confirmation.revertHere().text, reason);
+                        AReply reply = confirmation.wiki().edit(confirmation.page(), text, reason);
 
                         String addS = confirmation.count() == 1 ? "" : "s";
                         String message = MessageUtil.getMessageFromReply(reply,
@@ -106,42 +117,70 @@ public class RevertEditCommand extends ConfirmationCommand<RevertEditCommand.Con
             String reason = args.getArgNullable(1);
             String parsedReason = reason == null ? "" : " for \"" + reason + '"';
             Integer edits = args.getNullableArgAsInteger(2);
-            String invalidMessage = getInvalidMessage(context.wiki(), page);
-            if (invalidMessage != null)
-                return sendMessage(invalidMessage, channel);
-
-            String lastEditor = context.wiki().getLastEditor(page);
-            if (lastEditor == null)
+            RevertTarget target = findRevertTarget(context.wiki(), page, edits);
+            if (target == null)
+                return sendMessage("**%s** does not exist!".formatted(page), channel);
+            if (target.user() == null)
                 return sendMessage("An error occurred when trying to get the last editor of **%s**.".formatted(page), channel);
-
-            List<Revision> nonUserRevs = context.wiki().getRevisions(page, 1, false, null, null, null, lastEditor);
-            if (nonUserRevs.isEmpty())
+            if (target.revertHereRevid() == -1)
                 return sendMessage("There has only been one editor of **%s**. Please delete the page instead.".formatted(page), channel);
 
-            Revision revertHere = nonUserRevs.get(0);
-            Revision latest = getLatestRev(context.wiki(), page);
-            List<Revision> allRevs = context.wiki().getRevisions(page, -1, false, null, null, null, null);
-            int count = 0;
-            for (Revision rev : allRevs) {
-                if (edits != null && edits == count && count != 0) {
-                    revertHere = rev;
-                    break;
-                }
-                if (rev.equals(revertHere))
-                    break;
-                count++;
-            }
+            int count = target.count();
             String addS = count == 1 ? "" : "s";
             String withReason = reason == null ? "" : " with reason \"%s\"".formatted(reason);
-            int finalCount = count;
-            Revision finalRevertHere = revertHere;
-            return sendMessage("Do you want to revert **%d** consecutive edit%s by `%s` on page **%s**%s?".formatted(count, addS, lastEditor, page, withReason), channel)
-                    .flatMap(m -> addReactions(m, new ConfirmationContext(context.wiki(), event.getMessage(), m, page, parsedReason, lastEditor, finalRevertHere, latest, finalCount)));
+            return sendMessage("Do you want to revert **%d** consecutive edit%s by `%s` on page **%s**%s?".formatted(count, addS, target.user(), page, withReason), channel)
+                    .flatMap(m -> addReactions(m, new ConfirmationContext(context.wiki(), event.getMessage(), m, page, parsedReason, target.user(),
+                            target.revertHereRevid(), target.latestRevid(), count)));
         });
     }
 
-    private static Revision getLatestRev(Wiki wiki, String page) {
-        return wiki.getRevisions(page, 1, false, null, null, null, null).get(0);
+    /**
+     * Walks the history of the page from newest to oldest in small batches without content, stopping at the revision to revert to.
+     * This is the first revision by a different user than the latest editor, or the revision {@code edits} revisions back
+     * if that comes first.
+     *
+     * @return the revision to revert to, or null if the page does not exist.
+     */
+    private static RevertTarget findRevertTarget(Wiki wiki, String page, Integer edits) {
+        String user = null;
+        long latestRevid = -1;
+        int count = 0;
+        Map<String, String> continueParams = Map.of();
+        do {
+            HashMap<String, String> params = FL.pMap("prop", "revisions", "titles", page, "rvprop", "ids|user", "rvlimit", Integer.toString(REVISION_BATCH_SIZE));
+            params.putAll(continueParams);
+            JsonObject json = wiki.basicPOST("query", params).getJsonBody().getAsJsonObject();
+            JsonObject query = json.getAsJsonObject("query");
+            List<JsonObject> pages = query == null ? List.of() : WikiUtil.getQueryPages(query);
+            if (pages.isEmpty() || !pages.get(0).has("revisions"))
+                return count == 0 ? null : new RevertTarget(user, latestRevid, -1, count);
+
+            for (JsonElement element : pages.get(0).getAsJsonArray("revisions")) {
+                JsonObject revision = element.getAsJsonObject();
+                long revid = revision.get("revid").getAsLong();
+                String revisionUser = GSONP.getStr(revision, "user"); // Missing if the user was hidden
+                if (count == 0) {
+                    if (revisionUser == null)
+                        return new RevertTarget(null, revid, -1, 0);
+                    user = revisionUser;
+                    latestRevid = revid;
+                }
+                if ((edits != null && edits == count && count != 0) || !user.equals(revisionUser))
+                    return new RevertTarget(user, latestRevid, revid, count);
+                count++;
+            }
+
+            JsonObject cont = json.getAsJsonObject("continue");
+            if (cont == null) {
+                continueParams = null;
+            } else {
+                Map<String, String> next = new HashMap<>();
+                cont.entrySet().forEach(entry -> next.put(entry.getKey(), entry.getValue().getAsString()));
+                continueParams = next;
+            }
+        } while (continueParams != null);
+
+        return new RevertTarget(user, latestRevid, -1, count);
     }
 
     private static String getInvalidMessage(Wiki wiki, String page) {
@@ -151,5 +190,13 @@ public class RevertEditCommand extends ConfirmationCommand<RevertEditCommand.Con
         return null;
     }
 
-    public record ConfirmationContext(Wiki wiki, Message original, Message response, String page, String reason, String user, Revision revertHere, Revision latest, int count) implements BaseConfirmationContext {}
+    /**
+     * @param user The latest editor of the page, or null if hidden.
+     * @param latestRevid The id of the latest revision of the page.
+     * @param revertHereRevid The id of the revision to revert to, or -1 if the latest editor made every revision.
+     * @param count The number of revisions that will be reverted.
+     */
+    private record RevertTarget(String user, long latestRevid, long revertHereRevid, int count) {}
+
+    public record ConfirmationContext(Wiki wiki, Message original, Message response, String page, String reason, String user, long revertHereRevid, long latestRevid, int count) implements BaseConfirmationContext {}
 }
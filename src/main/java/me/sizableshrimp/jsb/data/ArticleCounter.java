@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.data;
+
+import me.sizableshrimp.jsb.util.RecentChanges;
+import me.sizableshrimp.jsb.util.RecentChanges.RecentChange;
+import me.sizableshrimp.jsb.util.SnapshotStore;
+import org.fastily.jwiki.core.NS;
+import org.fastily.jwiki.core.Wiki;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the articles of a wiki, which are all pages in the main namespace including redirects but excluding translations.
+ * <p>
+ * The titles are listed once, either by scanning the main namespace or by restoring them from the {@link SnapshotStore},
+ * and are then kept up to date from {@link RecentChanges} creations, deletions, restores, imports and moves.
+ * Before listening, any changes since the scan started or the snapshot was saved are applied, so that nothing
+ * in between is missed. Applying a sequence of changes is idempotent, so changes seen twice do no harm.
+ */
+public final class ArticleCounter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArticleCounter.class);
+    // Recent changes are only kept for a limited time, so older snapshots cannot be caught up reliably
+    private static final Duration MAX_SNAPSHOT_AGE = Duration.ofDays(14);
+    private static final Map<Wiki, ArticleCounter> counters = new ConcurrentHashMap<>();
+    private final Wiki wiki;
+    private volatile Set<String> titles;
+    private volatile boolean listening;
+    // The time to catch up on changes from, set by both the scan and restoring a snapshot
+    private Instant catchUpSince;
+
+    static {
+        SnapshotStore.register(new Snapshot());
+    }
+
+    private ArticleCounter(Wiki wiki) {
+        this.wiki = wiki;
+    }
+
+    /**
+     * Returns the number of articles on the wiki. This is a blocking call on first use if there was no snapshot.
+     *
+     * @param wiki The {@link Wiki} instance.
+     * @return the number of articles on the wiki.
+     */
+    public static int getCount(Wiki wiki) {
+        ArticleCounter counter = get(wiki);
+        counter.load();
+        return counter.titles.size();
+    }
+
+    /**
+     * Lists the articles of the wiki if they have not been listed or restored from a snapshot yet. This is a blocking call.
+     *
+     * @param wiki The {@link Wiki} instance.
+     */
+    public static void preload(Wiki wiki) {
+        get(wiki).load();
+    }
+
+    private static ArticleCounter get(Wiki wiki) {
+        return counters.computeIfAbsent(wiki, ArticleCounter::new);
+    }
+
+    private synchronized void load() {
+        if (this.titles != null) {
+            // Retry catching up if it failed after the scan or restoring the snapshot
+            if (!this.listening)
+                catchUp();
+            return;
+        }
+
+        long start = System.nanoTime();
+        Instant scanStart = Instant.now();
+        Set<String> scanned = ConcurrentHashMap.newKeySet();
+        for (String title : this.wiki.allPages("", false, false, -1, NS.MAIN)) {
+            if (isArticle(0, title))
+                scanned.add(title);
+        }
+        this.titles = scanned;
+        this.catchUpSince = scanStart;
+        LOGGER.info("Counted {} articles in {} ms", scanned.size(), (System.nanoTime() - start) / 1_000_000);
+
+        catchUp();
+    }
+
+    /**
+     * Applies the changes since {@link #catchUpSince} and then starts applying changes as they are polled.
+     * If the changes cannot be fetched, the count is left as it is and catching up is retried on the next use.
+     */
+    private synchronized void catchUp() {
+        if (this.listening)
+            return;
+
+        try {
+            RecentChanges.getChangesSince(this.wiki, this.catchUpSince).forEach(this::apply);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not catch up on changes since {}, the article count may be out of date", this.catchUpSince, e);
+            return;
+        }
+        RecentChanges.addListener(this.wiki, this::apply);
+        this.listening = true;
+    }
+
+    private synchronized void apply(RecentChange change) {
+        Set<String> current = this.titles;
+        if (current == null)
+            return;
+
+        if (change.isCreation() || change.isRestore() || change.isImport()) {
+            if (isArticle(change.ns(), change.title()))
+                current.add(change.title());
+        } else if (change.isDeletion()) {
+            current.remove(change.title());
+        } else if (change.isMove()) {
+            // The source is kept as a redirect unless the redirect was suppressed
+            if (change.isRedirectSuppressed())
+                current.remove(change.title());
+            if (isArticle(change.getMoveTargetNs(), change.getMoveTarget()))
+                current.add(change.getMoveTarget());
+        }
+    }
+
+    private boolean isArticle(int ns, String title) {
+        return ns == 0 && Language.getByTitle(this.wiki, title) == null;
+    }
+
+    /**
+     * Saves the article titles so that the main namespace does not have to be scanned again after a restart.
+     * Changes made while the bot was offline are caught up on from recent changes in the background.
+     */
+    private static final class Snapshot implements SnapshotStore.Participant {
+        @Override
+        public String getSnapshotId() {
+            return "articles";
+        }
+
+        @Override
+        public void writeSnapshot(Wiki wiki, DataOutputStream out) throws IOException {
+            ArticleCounter counter = counters.get(wiki);
+            // Only a counter that is listening is up to date when the snapshot is saved
+            if (counter == null || !counter.listening) {
+                out.writeBoolean(false);
+                return;
+            }
+
+            List<String> titles = new ArrayList<>(counter.titles);
+            out.writeBoolean(true);
+
+            out.writeInt(titles.size());
+            for (String title : titles) {
+                out.writeUTF(title);
+            }
+        }
+
+        @Override
+        public void readSnapshot(Wiki wiki, DataInputStream in, long savedAt) throws IOException {
+            if (!in.readBoolean())
+                return;
+
+            int size = in.readInt();
+            Set<String> titles = ConcurrentHashMap.newKeySet(size);
+            for (int i = 0; i < size; i++) {
+                titles.add(in.readUTF());
+            }
+            if (System.currentTimeMillis() - savedAt > MAX_SNAPSHOT_AGE.toMillis())
+                return;
+
+            ArticleCounter counter = get(wiki);
+            synchronized (counter) {
+                if (counter.titles == null) {
+                    counter.titles = titles;
+                    counter.catchUpSince = Instant.ofEpochMilli(savedAt).minus(RecentChanges.POLL_INTERVAL);
+                }
+            }
+        }
+
+        @Override
+        public void revalidate(Wiki wiki) {
+            ArticleCounter counter = counters.get(wiki);
+            if (counter != null)
+                counter.load();
+        }
+    }
+}
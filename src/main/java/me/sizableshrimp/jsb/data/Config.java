@@ -29,6 +29,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 
 public final class Config {
+    public static final double DEFAULT_MAX_REQUESTS_PER_SECOND = 5;
     private String useragent;
     private String username;
     private String password;
@@ -37,6 +38,7 @@ public final class Config {
     private String botToken;
     private String prefix;
     private long ownerId;
+    private double maxRequestsPerSecond;
 
     private Config() {}
 
@@ -55,6 +57,9 @@ public final class Config {
         config.botToken = System.getenv("BOT_TOKEN");
         config.prefix = System.getenv("PREFIX");
         config.ownerId = Long.parseLong(System.getenv("OWNER_ID"));
+        String maxRequestsPerSecond = System.getenv("MAX_REQUESTS_PER_SECOND");
+        if (maxRequestsPerSecond != null)
+            config.maxRequestsPerSecond = Double.parseDouble(maxRequestsPerSecond);
 
         return config;
     }
@@ -90,4 +95,14 @@ public final class Config {
     public long getOwnerId() {
         return ownerId;
     }
+
+    /**
+     * Returns the average number of requests per second the bot may make to the wiki, defaulting to
+     * {@link #DEFAULT_MAX_REQUESTS_PER_SECOND} if it is not set.
+     *
+     * @return the average number of requests per second the bot may make to the wiki.
+     */
+    public double getMaxRequestsPerSecond() {
+        return this.maxRequestsPerSecond > 0 ? this.maxRequestsPerSecond : DEFAULT_MAX_REQUESTS_PER_SECOND;
+    }
 }
@@ -25,6 +25,8 @@ package me.sizableshrimp.jsb.data;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import me.sizableshrimp.jsb.util.CachedMap;
+import me.sizableshrimp.jsb.util.SnapshotStore;
 import me.sizableshrimp.jsb.util.WikiUtil;
 import org.fastily.jwiki.core.QTemplate;
 import org.fastily.jwiki.core.Wiki;
@@ -33,6 +35,10 @@ import org.fastily.jwiki.util.GSONP;
 import reactor.util.annotation.NonNull;
 import reactor.util.annotation.Nullable;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -74,8 +80,16 @@ public final class Language {
      * https://www.mediawiki.org/wiki/API:Siteinfo
      */
     private static final QTemplate LANGUAGE_INFO = new QTemplate(FL.pMap("action", "query", "meta", "siteinfo", "siprop", "languages"), "query");
-    private static Map<String, Language> codes = null;
-    private static Map<String, Language> joined = null;
+    /**
+     * Languages rarely change, so they are refreshed in the background a few times a day.
+     * Each refresh builds a new {@link LanguageData} and swaps it in, so readers never see a partially filled index.
+     */
+    private static final CachedMap<Wiki, LanguageData> CACHED_LANGUAGE_DATA = new CachedMap<>(Duration.ofHours(6));
+    private static final String OVERRIDES_MODULE = "Module:Language/Names";
+
+    static {
+        SnapshotStore.register(new Snapshot());
+    }
 
     private Language(@NonNull String code, @NonNull String autonym, @Nullable String english, @Nullable Direction writingDirection) {
         this.code = code;
@@ -112,9 +126,7 @@ public final class Language {
      * 
      */
     public static Language getByCode(Wiki wiki, String code) {
-        loadLanguages(wiki);
-
-        return codes.get(code);
+        return loadLanguages(wiki).codes().get(code);
     }
 
     /**
@@ -129,25 +141,38 @@ public final class Language {
      * 
      */
     public static Language getByInfo(Wiki wiki, String info) {
-        loadLanguages(wiki);
+        return loadLanguages(wiki).joined().get(info.toLowerCase());
+    }
 
-        return joined.get(info.toLowerCase());
+    /**
+     * Loads the languages into the cache if they have not been loaded yet, so that the first lookup does not have to wait for them.
+     *
+     * @param wiki A {@link Wiki} object to use for requesting the data.
+     */
+    public static void preload(Wiki wiki) {
+        loadLanguages(wiki);
     }
 
-    private static void loadLanguages(Wiki wiki) {
-        if (codes != null)
-            return;
+    private static LanguageData loadLanguages(Wiki wiki) {
+        return CACHED_LANGUAGE_DATA.getOrRetrieve(wiki, Language::retrieveLanguages);
+    }
 
-        codes = new HashMap<>();
-        joined = new HashMap<>();
+    private static LanguageData retrieveLanguages(Wiki wiki) {
+        long revid = WikiUtil.getLatestRevisionId(wiki, OVERRIDES_MODULE);
+        Map<String, Language> codes = new HashMap<>();
+        Map<String, Language> joined = new HashMap<>();
         List<JsonObject> languageinfo = WikiUtil.getQueryRepliesAsList(LANGUAGE_INFO.createQuery(wiki), "languages");
         List<JsonObject> englishNames = WikiUtil.getQueryRepliesAsList(LANGUAGE_INFO.createQuery(wiki).set("siinlanguagecode", "en"), "languages");
 
-        parseLanguageInfo(languageinfo, englishNames);
-        parseOverrides(Scribunto.runScribuntoCode(wiki, "Language/Names", null).getReturnJson().getAsJsonObject());
+        parseLanguageInfo(codes, joined, languageinfo, englishNames);
+        JsonElement overrides = Scribunto.runScribuntoCode(wiki, OVERRIDES_MODULE, null).getReturnJson();
+        if (overrides != null)
+            parseOverrides(codes, joined, overrides.getAsJsonObject());
+
+        return new LanguageData(Map.copyOf(codes), Map.copyOf(joined), revid);
     }
 
-    private static void parseLanguageInfo(List<JsonObject> languageinfo, List<JsonObject> englishNames) {
+    private static void parseLanguageInfo(Map<String, Language> codes, Map<String, Language> joined, List<JsonObject> languageinfo, List<JsonObject> englishNames) {
         for (int i = 0; i < languageinfo.size(); i++) {
             JsonObject json = languageinfo.get(i);
 
@@ -156,7 +181,7 @@ public final class Language {
             String autonym = GSONP.getStr(json, "*");
             String english = GSONP.getStr(englishNames.get(i).getAsJsonObject(), "*");
             Language language = new Language(code, autonym, english, null);
-            add(language);
+            add(codes, joined, language);
         }
     }
 
@@ -170,16 +195,16 @@ public final class Language {
     //    }
     //}
 
-    private static void parseOverrides(JsonObject overrides) {
+    private static void parseOverrides(Map<String, Language> codes, Map<String, Language> joined, JsonObject overrides) {
         for (Map.Entry<String, JsonElement> entry : overrides.entrySet()) {
             String code = entry.getKey();
             JsonArray json = entry.getValue().getAsJsonArray();
             Language language = new Language(code, json.get(1).getAsString(), json.get(0).getAsString(), null);
-            add(language);
+            add(codes, joined, language);
         }
     }
 
-    private static void add(Language language) {
+    private static void add(Map<String, Language> codes, Map<String, Language> joined, Language language) {
         codes.put(language.getCode(), language);
         joined.put(language.getCode().toLowerCase(), language);
         if (!language.getAutonym().isBlank())
@@ -239,6 +264,90 @@ public final class Language {
                 '}';
     }
 
+    /**
+     * @param revid The revision of the overrides module the data was loaded with, or -1 if unknown.
+     */
+    private record LanguageData(Map<String, Language> codes, Map<String, Language> joined, long revid) {}
+
+    /**
+     * Saves the language index so that it does not have to be rebuilt from the site info and Scribunto after a restart.
+     * The restored data is kept if the overrides module has not been edited since it was loaded.
+     */
+    private static final class Snapshot implements SnapshotStore.Participant {
+        @Override
+        public String getSnapshotId() {
+            return "languages";
+        }
+
+        @Override
+        public void writeSnapshot(Wiki wiki, DataOutputStream out) throws IOException {
+            LanguageData data = CACHED_LANGUAGE_DATA.getIfPresent(wiki);
+            if (data == null) {
+                out.writeBoolean(false);
+                return;
+            }
+
+            out.writeBoolean(true);
+            out.writeLong(CACHED_LANGUAGE_DATA.getTimestamp(wiki));
+            out.writeLong(data.revid());
+            writeLanguages(out, data.codes());
+            writeLanguages(out, data.joined());
+        }
+
+        @Override
+        public void readSnapshot(Wiki wiki, DataInputStream in, long savedAt) throws IOException {
+            if (!in.readBoolean())
+                return;
+
+            long timestamp = in.readLong();
+            long revid = in.readLong();
+            Map<String, Language> codes = readLanguages(in);
+            Map<String, Language> joined = readLanguages(in);
+            // Keeps the original timestamp, so the data expires as usual if it cannot be revalidated
+            CACHED_LANGUAGE_DATA.put(wiki, new LanguageData(codes, joined, revid), timestamp);
+        }
+
+        @Override
+        public void revalidate(Wiki wiki) {
+            LanguageData data = CACHED_LANGUAGE_DATA.getIfPresent(wiki);
+            if (data == null)
+                return;
+
+            if (data.revid() == -1 || data.revid() != WikiUtil.getLatestRevisionId(wiki, OVERRIDES_MODULE)) {
+                CACHED_LANGUAGE_DATA.retrieve(wiki, Language::retrieveLanguages);
+            } else if (CACHED_LANGUAGE_DATA.getIfPresent(wiki) == data) {
+                // The overrides have not been edited, so the data is as good as freshly loaded
+                CACHED_LANGUAGE_DATA.put(wiki, data, System.currentTimeMillis());
+            }
+        }
+
+        private static void writeLanguages(DataOutputStream out, Map<String, Language> languages) throws IOException {
+            out.writeInt(languages.size());
+            for (Map.Entry<String, Language> entry : languages.entrySet()) {
+                Language language = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeUTF(language.getCode());
+                out.writeUTF(language.getAutonym());
+                out.writeBoolean(language.getEnglish() != null);
+                if (language.getEnglish() != null)
+                    out.writeUTF(language.getEnglish());
+            }
+        }
+
+        private static Map<String, Language> readLanguages(DataInputStream in) throws IOException {
+            int size = in.readInt();
+            Map<String, Language> languages = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                String code = in.readUTF();
+                String autonym = in.readUTF();
+                String english = in.readBoolean() ? in.readUTF() : null;
+                languages.put(key, new Language(code, autonym, english, null));
+            }
+            return Map.copyOf(languages);
+        }
+    }
+
     public enum Direction {
         LEFT_TO_RIGHT("ltr"),
         RIGHT_TO_LEFT("rtl");
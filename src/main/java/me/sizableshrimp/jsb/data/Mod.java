@@ -26,12 +26,20 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import me.sizableshrimp.jsb.Bot;
 import me.sizableshrimp.jsb.util.CachedMap;
+import me.sizableshrimp.jsb.util.SnapshotStore;
 import me.sizableshrimp.jsb.util.WikiUtil;
 import org.fastily.jwiki.core.AReply;
 import org.fastily.jwiki.core.Wiki;
 import org.fastily.jwiki.util.GSONP;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.function.Function;
@@ -51,24 +59,35 @@ public final record Mod(Wiki wiki, String abbrv, String name, String link) {
     private static final Pattern NORMAL_ABBREVIATION = Pattern.compile("^[a-zA-Z][a-zA-Z0-9]*$");
     private static final CachedMap<Wiki, ModData> CACHED_MOD_DATA = new CachedMap<>();
     private static final Function<Wiki, ModData> RETRIEVE_FUNCTION = w -> {
+        // Read the revision first so that an edit made while loading is picked up by the next revalidation
+        long revid = WikiUtil.getLatestRevisionId(w, MODS_LIST);
         // Order abbreviations with TreeMap for addition and removal purposes
-        TreeMap<String, Mod> byAbbrv = new TreeMap<>(getTableAsMap(w));
+        return createModData(new TreeMap<>(getTableAsMap(w)), revid);
+    };
+
+    static {
+        SnapshotStore.register(new Snapshot());
+    }
+
+    public Mod(Wiki wiki, String abbrv, String name, String link) {
+        this.wiki = wiki;
+        this.abbrv = abbrv;
+        this.name = name;
+        this.link = link == null ? name : link;
+    }
 
+    private static ModData createModData(TreeMap<String, Mod> byAbbrv, long revid) {
         Map<String, Mod> joinedMods = new HashMap<>();
+        ModIndex index = new ModIndex();
         for (Map.Entry<String, Mod> entry : byAbbrv.entrySet()) {
             Mod mod = entry.getValue();
             logConflict(mod, joinedMods.put(mod.name().toLowerCase(), mod)); // Case insensitive mod name
             logConflict(mod, joinedMods.put(entry.getKey().toLowerCase(), mod)); // Add abbreviation but lowercase
+            index.put(mod.name(), mod);
+            index.put(entry.getKey(), mod);
         }
 
-        return new ModData(joinedMods, byAbbrv);
-    };
-
-    public Mod(Wiki wiki, String abbrv, String name, String link) {
-        this.wiki = wiki;
-        this.abbrv = abbrv;
-        this.name = name;
-        this.link = link == null ? name : link;
+        return new ModData(joinedMods, byAbbrv, index, revid);
     }
 
     /**
@@ -78,9 +97,32 @@ public final record Mod(Wiki wiki, String abbrv, String name, String link) {
      * @return The localized mod name in the specified language, or null if it does not exist.
      */
     public String getLocalized(Language lang) {
+        return getLocalizedBulk(this.wiki, lang, List.of(this)).get(this);
+    }
+
+    /**
+     * Get the localized names of multiple mods in the specified language using a single Scribunto console request.
+     *
+     * @param wiki A {@link Wiki} object to use for requesting the data.
+     * @param lang A {@link Language} object to use, or English if null.
+     * @param mods The mods to localize.
+     * @return A map from each mod to its localized name in the specified language, in the same order as {@code mods}.
+     * A mod is mapped to null if its localized name does not exist.
+     */
+    public static Map<Mod, String> getLocalizedBulk(Wiki wiki, Language lang, Collection<Mod> mods) {
         String langCode = lang == null ? "en" : lang.getCode();
-        JsonElement returnJson = Scribunto.runScribuntoCode(this.wiki, MODS_LIST + '/' + langCode, "p.byAbbrv['" + this.abbrv + "']").getReturnJson();
-        return returnJson == null ? null : GSONP.getStr(returnJson.getAsJsonObject(), "localized");
+        List<Mod> modList = List.copyOf(new LinkedHashSet<>(mods));
+        List<String> expressions = modList.stream()
+                .map(mod -> "p.byAbbrv[" + Scribunto.quote(mod.abbrv) + "]")
+                .toList();
+        List<JsonElement> results = Scribunto.runBatch(wiki, MODS_LIST + '/' + langCode, expressions);
+
+        Map<Mod, String> localized = new LinkedHashMap<>();
+        for (int i = 0; i < modList.size(); i++) {
+            JsonElement result = results.get(i);
+            localized.put(modList.get(i), result == null || !result.isJsonObject() ? null : GSONP.getStr(result.getAsJsonObject(), "localized"));
+        }
+        return localized;
     }
 
     /**
@@ -156,9 +198,9 @@ public final record Mod(Wiki wiki, String abbrv, String name, String link) {
         AReply reply = this.wiki.edit(MODS_LIST, newText, "Added " + this.abbrv + '=' + this.name);
 
         if (reply.isSuccess()) {
-            modData.joinedMods().put(this.name.toLowerCase(), this);
-            modData.joinedMods().put(this.abbrv.toLowerCase(), this);
-            modData.byAbbrv().put(this.abbrv.toUpperCase(), this);
+            TreeMap<String, Mod> byAbbrv = new TreeMap<>(modData.byAbbrv());
+            byAbbrv.put(this.abbrv.toUpperCase(), this);
+            replaceModData(this.wiki, modData, byAbbrv);
         }
 
         return reply;
@@ -203,9 +245,9 @@ public final record Mod(Wiki wiki, String abbrv, String name, String link) {
         AReply reply = this.wiki.edit(MODS_LIST, newText, "Removed " + this.abbrv + '=' + this.name);
 
         if (reply.isSuccess()) {
-            modData.joinedMods().remove(this.name.toLowerCase());
-            modData.joinedMods().remove(this.abbrv.toLowerCase());
-            modData.byAbbrv().remove(this.abbrv.toUpperCase());
+            TreeMap<String, Mod> byAbbrv = new TreeMap<>(modData.byAbbrv());
+            byAbbrv.remove(this.abbrv.toUpperCase());
+            replaceModData(this.wiki, modData, byAbbrv);
         }
 
         return reply;
@@ -237,6 +279,29 @@ public final record Mod(Wiki wiki, String abbrv, String name, String link) {
         return modData.byAbbrv().get(modAbbrv.toUpperCase());
     }
 
+    /**
+     * Get mods whose unlocalized name or abbreviation starts with or closely resembles the input, for use in "did you mean" messages.
+     * This only uses the cached mod data, so it does not make any requests unless the mods have not been loaded yet.
+     *
+     * @param wiki A {@link Wiki} object to use for requesting the data.
+     * @param modInput The unlocalized mod name or abbreviation that could not be found, case insensitive.
+     * @param limit The maximum number of suggestions to return.
+     * @return A list of suggested mods, best match first, which may be empty.
+     */
+    public static List<Mod> getSuggestions(Wiki wiki, String modInput, int limit) {
+        ModData modData = loadMods(wiki, false);
+        return modData.index().suggest(modInput, limit);
+    }
+
+    /**
+     * Loads the mods list into the cache if it has not been loaded yet, so that the first lookup does not have to wait for it.
+     *
+     * @param wiki The {@link Wiki} object to use for requesting the data.
+     */
+    public static void preload(Wiki wiki) {
+        loadMods(wiki, false);
+    }
+
     /**
      * Load the mods.
      *
@@ -252,6 +317,15 @@ public final record Mod(Wiki wiki, String abbrv, String name, String link) {
         }
     }
 
+    /**
+     * Caches new mod data after an edit to the mods list. Mod data is never modified once it is cached,
+     * so that lookups and snapshots on other threads can read it without locking.
+     * The revision is kept as it was, so that a restored snapshot of this data is always reloaded.
+     */
+    private static void replaceModData(Wiki wiki, ModData previous, TreeMap<String, Mod> byAbbrv) {
+        CACHED_MOD_DATA.put(wiki, createModData(byAbbrv, previous.revid()), System.currentTimeMillis());
+    }
+
     private static void logConflict(Mod mod, Mod prev) {
         if (prev != null && mod != prev) {
             Bot.LOGGER.warn("A mod conflict was found between {} and {}.", prev, mod);
@@ -314,5 +388,73 @@ public final record Mod(Wiki wiki, String abbrv, String name, String link) {
                 '}';
     }
 
-    private record ModData(Map<String, Mod> joinedMods, TreeMap<String, Mod> byAbbrv) {}
+    /**
+     * @param revid The revision of the mods list the data was loaded from, or -1 if unknown.
+     */
+    private record ModData(Map<String, Mod> joinedMods, TreeMap<String, Mod> byAbbrv, ModIndex index, long revid) {}
+
+    /**
+     * Saves the mods list so that it does not have to be evaluated through Scribunto again after a restart.
+     * The restored data is kept if the mods list has not been edited since it was loaded.
+     */
+    private static final class Snapshot implements SnapshotStore.Participant {
+        @Override
+        public String getSnapshotId() {
+            return "mods";
+        }
+
+        @Override
+        public void writeSnapshot(Wiki wiki, DataOutputStream out) throws IOException {
+            ModData modData = CACHED_MOD_DATA.getIfPresent(wiki);
+            if (modData == null) {
+                out.writeBoolean(false);
+                return;
+            }
+
+            out.writeBoolean(true);
+            out.writeLong(CACHED_MOD_DATA.getTimestamp(wiki));
+            out.writeLong(modData.revid());
+            Map<String, Mod> byAbbrv = modData.byAbbrv();
+            out.writeInt(byAbbrv.size());
+            for (Map.Entry<String, Mod> entry : byAbbrv.entrySet()) {
+                Mod mod = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeUTF(mod.abbrv());
+                out.writeUTF(mod.name());
+                out.writeUTF(mod.link());
+            }
+        }
+
+        @Override
+        public void readSnapshot(Wiki wiki, DataInputStream in, long savedAt) throws IOException {
+            if (!in.readBoolean())
+                return;
+
+            long timestamp = in.readLong();
+            long revid = in.readLong();
+            int size = in.readInt();
+            TreeMap<String, Mod> byAbbrv = new TreeMap<>();
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                byAbbrv.put(key, new Mod(wiki, in.readUTF(), in.readUTF(), in.readUTF()));
+            }
+
+            // Keeps the original timestamp, so the data expires as usual if it cannot be revalidated
+            CACHED_MOD_DATA.put(wiki, createModData(byAbbrv, revid), timestamp);
+        }
+
+        @Override
+        public void revalidate(Wiki wiki) {
+            ModData modData = CACHED_MOD_DATA.getIfPresent(wiki);
+            if (modData == null)
+                return;
+
+            if (modData.revid() == -1 || modData.revid() != WikiUtil.getLatestRevisionId(wiki, MODS_LIST)) {
+                CACHED_MOD_DATA.retrieve(wiki, RETRIEVE_FUNCTION);
+            } else if (CACHED_MOD_DATA.getIfPresent(wiki) == modData) {
+                // The mods list has not been edited, so the data is as good as freshly loaded
+                CACHED_MOD_DATA.put(wiki, modData, System.currentTimeMillis());
+            }
+        }
+    }
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A lookup index over lowercase mod names and abbreviations that answers prefix and typo-tolerant queries
+ * without any API calls. Prefix queries use a trie and fuzzy queries use a BK-tree keyed on Levenshtein distance.
+ * Both structures support incremental additions, and removed keys are filtered out of the results, so
+ * the index can be kept up to date by {@link Mod#add()} and {@link Mod#remove()} without being rebuilt.
+ * <p>
+ * This class is thread-safe.
+ */
+final class ModIndex {
+    private final Map<String, Mod> mods = new HashMap<>();
+    private final TrieNode trie = new TrieNode();
+    private BkNode bkRoot;
+
+    /**
+     * Adds or replaces the mod under the given key.
+     *
+     * @param key The mod name or abbreviation, which is lowercased before being indexed.
+     * @param mod The mod to index.
+     */
+    synchronized void put(String key, Mod mod) {
+        key = key.toLowerCase();
+        if (this.mods.put(key, mod) != null)
+            return; // Already present in both trees
+
+        TrieNode node = this.trie;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new TrieNode());
+        }
+        node.terminal = true;
+
+        addToBkTree(key);
+    }
+
+    /**
+     * Removes the mod under the given key.
+     *
+     * @param key The mod name or abbreviation, case insensitive.
+     */
+    synchronized void remove(String key) {
+        key = key.toLowerCase();
+        if (this.mods.remove(key) == null)
+            return;
+
+        TrieNode node = this.trie;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node != null)
+            node.terminal = false;
+        // The BK-tree node is left in place as a routing node; lookups skip keys that are no longer in the map
+    }
+
+    /**
+     * Returns up to {@code limit} distinct mods whose name or abbreviation is close to the query.
+     * Mods whose keys start with the query come first, ordered by key length, followed by mods within a small
+     * edit distance of the query, ordered by distance.
+     *
+     * @param query The user input to look up, case insensitive.
+     * @param limit The maximum number of mods to return.
+     * @return A list of suggested mods, which may be empty.
+     */
+    synchronized List<Mod> suggest(String query, int limit) {
+        query = query.toLowerCase();
+        Set<Mod> result = new LinkedHashSet<>();
+        if (limit <= 0 || query.isEmpty())
+            return List.of();
+
+        for (String key : findByPrefix(query, limit)) {
+            result.add(this.mods.get(key));
+            if (result.size() >= limit)
+                return new ArrayList<>(result);
+        }
+
+        for (String key : findWithinDistance(query, getMaxDistance(query))) {
+            result.add(this.mods.get(key));
+            if (result.size() >= limit)
+                break;
+        }
+
+        return new ArrayList<>(result);
+    }
+
+    // Allow roughly one typo for every three characters, capped so that short queries do not match everything
+    private static int getMaxDistance(String query) {
+        return Math.max(1, Math.min(3, query.length() / 3));
+    }
+
+    private List<String> findByPrefix(String prefix, int limit) {
+        TrieNode node = this.trie;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node == null)
+            return List.of();
+
+        // Breadth-first so that shorter, closer completions are found first
+        List<String> keys = new ArrayList<>();
+        ArrayDeque<Map.Entry<String, TrieNode>> queue = new ArrayDeque<>();
+        queue.add(Map.entry(prefix, node));
+        while (!queue.isEmpty() && keys.size() < limit) {
+            Map.Entry<String, TrieNode> entry = queue.poll();
+            TrieNode current = entry.getValue();
+            if (current.terminal)
+                keys.add(entry.getKey());
+            for (Map.Entry<Character, TrieNode> child : current.children.entrySet()) {
+                queue.add(Map.entry(entry.getKey() + child.getKey(), child.getValue()));
+            }
+        }
+
+        return keys;
+    }
+
+    private void addToBkTree(String key) {
+        if (this.bkRoot == null) {
+            this.bkRoot = new BkNode(key);
+            return;
+        }
+
+        BkNode node = this.bkRoot;
+        while (true) {
+            int distance = levenshtein(key, node.key);
+            if (distance == 0)
+                return; // A previously removed key being added back
+            BkNode child = node.children.get(distance);
+            if (child == null) {
+                node.children.put(distance, new BkNode(key));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    private List<String> findWithinDistance(String query, int maxDistance) {
+        if (this.bkRoot == null)
+            return List.of();
+
+        List<Map.Entry<String, Integer>> matches = new ArrayList<>();
+        ArrayDeque<BkNode> stack = new ArrayDeque<>();
+        stack.push(this.bkRoot);
+        while (!stack.isEmpty()) {
+            BkNode node = stack.pop();
+            int distance = levenshtein(query, node.key);
+            if (distance <= maxDistance && this.mods.containsKey(node.key))
+                matches.add(Map.entry(node.key, distance));
+
+            // By the triangle inequality, only children within maxDistance of this node's distance can match
+            for (Map.Entry<Integer, BkNode> child : node.children.subMap(distance - maxDistance, true, distance + maxDistance, true).entrySet()) {
+                stack.push(child.getValue());
+            }
+        }
+
+        matches.sort(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey(Comparator.comparingInt(String::length))));
+        return matches.stream().map(Map.Entry::getKey).toList();
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] temp = previous;
+            previous = current;
+            current = temp;
+        }
+
+        return previous[b.length()];
+    }
+
+    private static final class TrieNode {
+        private final TreeMap<Character, TrieNode> children = new TreeMap<>();
+        private boolean terminal;
+    }
+
+    private static final class BkNode {
+        private final String key;
+        private final TreeMap<Integer, BkNode> children = new TreeMap<>();
+
+        private BkNode(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -25,6 +25,7 @@ package me.sizableshrimp.jsb.data;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import me.sizableshrimp.jsb.util.WikiUtil;
 import org.fastily.jwiki.core.Wiki;
 import org.fastily.jwiki.dwrap.TokenizedResponse;
 import org.fastily.jwiki.util.FL;
@@ -32,8 +33,15 @@ import org.fastily.jwiki.util.GSONP;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public final class Scribunto {
     private static final Logger LOGGER = LoggerFactory.getLogger(Scribunto.class);
+    private static final Map<ModuleKey, ModuleSource> moduleSources = new ConcurrentHashMap<>();
     private final String print;
     private final String ret;
     private final JsonObject responseJson;
@@ -72,15 +80,96 @@ public final class Scribunto {
     public static Scribunto runScribuntoCode(Wiki wiki, String module, String code) {
         if (code == null)
             code = "p";
+        return run(wiki, module, "=mw.text.jsonEncode(" + code + ")");
+    }
+
+    /**
+     * Evaluates multiple expressions against the given module in a single console request.
+     * The expressions are packed into one table keyed by their index, which is then JSON-encoded
+     * using {@code mw.text.jsonEncode} and split back up into the returned list.
+     *
+     * @param wiki A {@link Wiki} object to use for requesting the data.
+     * @param module The name of a module on the wiki, with or without the "Module:"
+     * prefix, e.g. "Language" or "Module:Language".
+     * @param expressions The expressions to evaluate, such as "p.byAbbrv['IC2']".
+     * Each expression must be a single Lua expression, as it is wrapped in parentheses.
+     * @return A list with the JSON result of each expression in the same order as {@code expressions}.
+     * An element is null if the expression evaluated to nil. Every element is null if the module
+     * does not exist or the console returned an error.
+     */
+    public static List<JsonElement> runBatch(Wiki wiki, String module, List<String> expressions) {
+        if (expressions.isEmpty())
+            return List.of();
+
+        StringBuilder question = new StringBuilder("=mw.text.jsonEncode({");
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i != 0)
+                question.append(',');
+            question.append("[\"").append(i).append("\"]=(").append(expressions.get(i)).append(')');
+        }
+        question.append("})");
+
+        List<JsonElement> results = new ArrayList<>(Collections.nCopies(expressions.size(), null));
+        JsonElement returnJson = run(wiki, module, question.toString()).getReturnJson();
+        // An empty Lua table is encoded as an array, so only read the results back from an object
+        if (returnJson == null || !returnJson.isJsonObject())
+            return results;
+
+        JsonObject resultsJson = returnJson.getAsJsonObject();
+        for (int i = 0; i < expressions.size(); i++) {
+            JsonElement result = resultsJson.get(Integer.toString(i));
+            results.set(i, result == null || result.isJsonNull() ? null : result);
+        }
+        return results;
+    }
+
+    private static Scribunto run(Wiki wiki, String module, String question) {
         module = prefixModule(module);
-        if (!wiki.exists(module))
+        String content = getModuleSource(wiki, module);
+        if (content == null)
             return new Scribunto();
         TokenizedResponse response = wiki.basicPOST("scribunto-console", FL.pMap("title", module, "question",
-                "=mw.text.jsonEncode(" + code + ")", "content", wiki.getPageText(module)));
+                question, "content", content));
 
         return new Scribunto(response.getJsonBody().getAsJsonObject());
     }
 
+    /**
+     * Quotes the given string as a Lua string literal.
+     *
+     * @param str The string to quote.
+     * @return The string as a single-quoted Lua string literal.
+     */
+    public static String quote(String str) {
+        return '\'' + str.replace("\\", "\\\\").replace("'", "\\'").replace("\n", "\\n") + '\'';
+    }
+
+    /**
+     * Returns the source of the module, only downloading the text if the latest revision has changed since it was last cached.
+     *
+     * @param wiki A {@link Wiki} object to use for requesting the data.
+     * @param module The name of the module, including the "Module:" prefix.
+     * @return The source of the module, or null if it does not exist.
+     */
+    private static String getModuleSource(Wiki wiki, String module) {
+        ModuleKey key = new ModuleKey(wiki, module);
+        long revid = WikiUtil.getLatestRevisionId(wiki, module);
+        if (revid == -1) {
+            moduleSources.remove(key);
+            return null;
+        }
+
+        ModuleSource cached = moduleSources.get(key);
+        if (cached != null && cached.revid() == revid)
+            return cached.text();
+
+        String text = wiki.getPageText(module);
+        if (text == null)
+            return null;
+        moduleSources.put(key, new ModuleSource(revid, text));
+        return text;
+    }
+
     private static String prefixModule(String title) {
         return title.startsWith("Module:") ? title : "Module:" + title;
     }
@@ -115,4 +204,8 @@ public final class Scribunto {
     public JsonObject getResponseJson() {
         return this.responseJson;
     }
+
+    private record ModuleKey(Wiki wiki, String title) {}
+
+    private record ModuleSource(long revid, String text) {}
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.listeners;
+
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.event.domain.channel.TextChannelDeleteEvent;
+import discord4j.core.event.domain.channel.TextChannelUpdateEvent;
+import discord4j.core.event.domain.guild.MemberUpdateEvent;
+import discord4j.core.event.domain.role.RoleCreateEvent;
+import discord4j.core.event.domain.role.RoleDeleteEvent;
+import discord4j.core.event.domain.role.RoleUpdateEvent;
+import me.sizableshrimp.jsb.api.EventListener;
+import me.sizableshrimp.jsb.api.WikiExecutor;
+import me.sizableshrimp.jsb.util.PermissionCache;
+import me.sizableshrimp.jsb.util.RoleCache;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Listeners which invalidate {@link PermissionCache} and {@link RoleCache} entries when guild roles,
+ * channels or the bot's own member change.
+ */
+public final class CacheInvalidationListeners {
+    private CacheInvalidationListeners() {}
+
+    public static final class RoleCreateListener extends EventListener<RoleCreateEvent> {
+        public RoleCreateListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+            super(RoleCreateEvent.class, client, wikiExecutor);
+        }
+
+        @Override
+        protected Mono<Void> execute(Flux<RoleCreateEvent> onEvent) {
+            return onEvent
+                    .doOnNext(e -> RoleCache.invalidateGuild(e.getGuildId()))
+                    .then();
+        }
+    }
+
+    public static final class RoleUpdateListener extends EventListener<RoleUpdateEvent> {
+        public RoleUpdateListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+            super(RoleUpdateEvent.class, client, wikiExecutor);
+        }
+
+        @Override
+        protected Mono<Void> execute(Flux<RoleUpdateEvent> onEvent) {
+            return onEvent
+                    .doOnNext(e -> {
+                        PermissionCache.invalidateGuild(e.getCurrent().getGuildId());
+                        RoleCache.invalidateGuild(e.getCurrent().getGuildId());
+                    })
+                    .then();
+        }
+    }
+
+    public static final class RoleDeleteListener extends EventListener<RoleDeleteEvent> {
+        public RoleDeleteListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+            super(RoleDeleteEvent.class, client, wikiExecutor);
+        }
+
+        @Override
+        protected Mono<Void> execute(Flux<RoleDeleteEvent> onEvent) {
+            return onEvent
+                    .doOnNext(e -> {
+                        PermissionCache.invalidateGuild(e.getGuildId());
+                        RoleCache.invalidateGuild(e.getGuildId());
+                    })
+                    .then();
+        }
+    }
+
+    public static final class TextChannelUpdateListener extends EventListener<TextChannelUpdateEvent> {
+        public TextChannelUpdateListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+            super(TextChannelUpdateEvent.class, client, wikiExecutor);
+        }
+
+        @Override
+        protected Mono<Void> execute(Flux<TextChannelUpdateEvent> onEvent) {
+            return onEvent
+                    .doOnNext(e -> PermissionCache.invalidateChannel(e.getCurrent().getId()))
+                    .then();
+        }
+    }
+
+    public static final class TextChannelDeleteListener extends EventListener<TextChannelDeleteEvent> {
+        public TextChannelDeleteListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+            super(TextChannelDeleteEvent.class, client, wikiExecutor);
+        }
+
+        @Override
+        protected Mono<Void> execute(Flux<TextChannelDeleteEvent> onEvent) {
+            return onEvent
+                    .doOnNext(e -> PermissionCache.invalidateChannel(e.getChannel().getId()))
+                    .then();
+        }
+    }
+
+    public static final class SelfMemberUpdateListener extends EventListener<MemberUpdateEvent> {
+        public SelfMemberUpdateListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+            super(MemberUpdateEvent.class, client, wikiExecutor);
+        }
+
+        @Override
+        protected Mono<Void> execute(Flux<MemberUpdateEvent> onEvent) {
+            return onEvent
+                    .filter(e -> e.getMemberId().equals(e.getClient().getSelfId()))
+                    .doOnNext(e -> PermissionCache.invalidateGuild(e.getGuildId()))
+                    .then();
+        }
+    }
+}
@@ -26,7 +26,7 @@ import discord4j.core.GatewayDiscordClient;
 import discord4j.core.event.domain.message.ReactionAddEvent;
 import me.sizableshrimp.jsb.api.ConfirmationManager;
 import me.sizableshrimp.jsb.api.EventListener;
-import org.fastily.jwiki.core.Wiki;
+import me.sizableshrimp.jsb.api.WikiExecutor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -36,8 +36,8 @@ import java.util.Set;
 public class ConfirmationListener extends EventListener<ReactionAddEvent> {
     public static final Set<ConfirmationManager<?>> managers = new HashSet<>();
 
-    public ConfirmationListener(GatewayDiscordClient client, Wiki wiki) {
-        super(ReactionAddEvent.class, client, wiki);
+    public ConfirmationListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+        super(ReactionAddEvent.class, client, wikiExecutor);
     }
 
     @Override
@@ -46,7 +46,7 @@ public class ConfirmationListener extends EventListener<ReactionAddEvent> {
                 .flatMap(e -> {
                     for (ConfirmationManager<?> manager : managers) {
                         if (manager.isValid(e))
-                            return manager.execute(e);
+                            return Mono.defer(() -> manager.execute(e)).subscribeOn(this.wikiExecutor.getScheduler());
                     }
 
                     return Mono.empty();
@@ -26,13 +26,13 @@ import discord4j.core.GatewayDiscordClient;
 import discord4j.core.event.domain.lifecycle.ReadyEvent;
 import me.sizableshrimp.jsb.Bot;
 import me.sizableshrimp.jsb.api.EventListener;
-import org.fastily.jwiki.core.Wiki;
+import me.sizableshrimp.jsb.api.WikiExecutor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public class FirstOnlineListener extends EventListener<ReadyEvent> {
-    public FirstOnlineListener(GatewayDiscordClient client, Wiki wiki) {
-        super(ReadyEvent.class, client, wiki);
+    public FirstOnlineListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+        super(ReadyEvent.class, client, wikiExecutor);
     }
 
     @Override
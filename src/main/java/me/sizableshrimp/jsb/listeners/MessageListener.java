@@ -26,22 +26,23 @@ import discord4j.core.GatewayDiscordClient;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import me.sizableshrimp.jsb.api.CommandManager;
 import me.sizableshrimp.jsb.api.EventListener;
+import me.sizableshrimp.jsb.api.WikiExecutor;
 import me.sizableshrimp.jsb.util.MessageUtil;
-import org.fastily.jwiki.core.Wiki;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public class MessageListener extends EventListener<MessageCreateEvent> {
     private final CommandManager commandManager;
 
-    public MessageListener(GatewayDiscordClient client, Wiki wiki) {
-        super(MessageCreateEvent.class, client, wiki);
-        this.commandManager = new CommandManager(client, wiki);
+    public MessageListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+        super(MessageCreateEvent.class, client, wikiExecutor);
+        this.commandManager = new CommandManager(client, wikiExecutor);
     }
 
     @Override
     protected Mono<Void> execute(Flux<MessageCreateEvent> onEvent) {
         return onEvent
+                .filter(this.commandManager::isCommandCandidate)
                 .filterWhen(MessageUtil::canReply)
                 .flatMap(this.commandManager::executeCommand)
                 .then();
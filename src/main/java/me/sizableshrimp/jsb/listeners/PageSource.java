@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.listeners;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Splits lines into pages, loading the lines in batches only once a page that needs them is requested.
+ * This allows the first page of a long list to be shown without loading the whole list.
+ * <p>
+ * Pages are stored deflated, since they are mostly long lists of similar page titles and only the page
+ * being shown needs to be inflated. Loading is blocking and should be done on the wiki thread pool.
+ * <p>
+ * This class is thread-safe.
+ */
+public abstract class PageSource {
+    private final int linesPerPage;
+    private final List<byte[]> pages = new ArrayList<>();
+    private final StringBuilder partialPage = new StringBuilder();
+    private int partialLines;
+    private boolean complete;
+
+    /**
+     * @param linesPerPage The number of lines on every page except possibly the last one.
+     */
+    protected PageSource(int linesPerPage) {
+        this.linesPerPage = linesPerPage;
+    }
+
+    /**
+     * Loads the next batch of lines. This is only called again after the previous call has returned.
+     *
+     * @return The lines of the batch, which may be empty, or null if there are no more lines.
+     */
+    protected abstract List<String> loadLines();
+
+    /**
+     * Returns the page at the index, loading more lines if needed.
+     *
+     * @param index The zero-based index of the page.
+     * @return The page at the index, or null if there is no such page.
+     */
+    public synchronized String getPage(int index) {
+        while (index >= this.pages.size() && !this.complete) {
+            loadBatch();
+        }
+        return index < this.pages.size() ? decompress(this.pages.get(index)) : null;
+    }
+
+    /**
+     * Returns the number of pages loaded so far, which is the total number of pages if {@link #isComplete()}.
+     *
+     * @return the number of pages loaded so far.
+     */
+    public synchronized int getPageCount() {
+        return this.pages.size();
+    }
+
+    /**
+     * Returns whether all lines have been loaded.
+     *
+     * @return whether all lines have been loaded.
+     */
+    public synchronized boolean isComplete() {
+        return this.complete;
+    }
+
+    private void loadBatch() {
+        List<String> lines = loadLines();
+        if (lines == null) {
+            this.complete = true;
+            if (this.partialLines > 0)
+                finishPage();
+            return;
+        }
+
+        for (String line : lines) {
+            if (this.partialLines > 0)
+                this.partialPage.append('\n');
+            this.partialPage.append(line);
+            if (++this.partialLines == this.linesPerPage)
+                finishPage();
+        }
+    }
+
+    private void finishPage() {
+        this.pages.add(compress(this.partialPage.toString()));
+        this.partialPage.setLength(0);
+        this.partialLines = 0;
+    }
+
+    private static byte[] compress(String page) {
+        byte[] input = page.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String decompress(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && !inflater.finished() && inflater.needsInput())
+                    throw new IllegalStateException("Truncated page data");
+                out.write(buffer, 0, length);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt page data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.listeners;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.reaction.ReactionEmoji;
+import me.sizableshrimp.jsb.util.Reactions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the {@link PageSource} and current position of every paginated message.
+ * <p>
+ * Entries expire after they have not been turned for the set expiration, and the least recently turned entries are
+ * evicted once there are more than the maximum number of entries.
+ * Removed entries are returned to the caller so that it can clean up the message.
+ * <p>
+ * This class is thread-safe.
+ */
+final class PageStore {
+    private final Map<Snowflake, Pager> pagers = new ConcurrentHashMap<>();
+    private final long expirationMillis;
+    private final int maximumSize;
+
+    /**
+     * @param expiration The {@link Duration} since the last page turn after which an entry expires.
+     * @param maximumSize The maximum number of entries before the least recently turned entries are evicted.
+     */
+    PageStore(Duration expiration, int maximumSize) {
+        this.expirationMillis = expiration.toMillis();
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Stores the pages of a newly sent message, which starts on the first page.
+     *
+     * @param message The message showing the pages.
+     * @param authorId The id of the only user allowed to turn the pages.
+     * @param source The pages to store.
+     * @return The entries that were evicted to make room, which may be empty.
+     */
+    List<PagedMessage> put(Message message, Snowflake authorId, PageSource source) {
+        PagedMessage pagedMessage = new PagedMessage(message.getClient(), message.getChannelId(), message.getId());
+        this.pagers.put(message.getId(), new Pager(pagedMessage, authorId, source));
+
+        if (this.pagers.size() <= this.maximumSize)
+            return List.of();
+
+        List<Map.Entry<Snowflake, Pager>> oldest = new ArrayList<>(this.pagers.entrySet());
+        oldest.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        List<PagedMessage> evicted = new ArrayList<>();
+        for (int i = 0; i < oldest.size() - this.maximumSize; i++) {
+            Map.Entry<Snowflake, Pager> entry = oldest.get(i);
+            if (this.pagers.remove(entry.getKey(), entry.getValue()))
+                evicted.add(entry.getValue().message);
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns the pager of a message if the user is allowed to turn its pages, and marks it as accessed.
+     *
+     * @param messageId The id of the paginated message.
+     * @param userId The id of the user turning the page.
+     * @return The pager, or null if the message is not paginated, has expired, or the user is not its author.
+     */
+    Pager get(Snowflake messageId, Snowflake userId) {
+        Pager pager = this.pagers.get(messageId);
+        long now = System.currentTimeMillis();
+        if (pager == null || !pager.authorId.equals(userId) || isExpired(pager, now))
+            return null;
+
+        pager.lastAccess = now;
+        return pager;
+    }
+
+    /**
+     * Removes all expired entries.
+     *
+     * @return The entries that were removed, which may be empty.
+     */
+    List<PagedMessage> removeExpired() {
+        long now = System.currentTimeMillis();
+        List<PagedMessage> expired = new ArrayList<>();
+        for (Map.Entry<Snowflake, Pager> entry : this.pagers.entrySet()) {
+            if (isExpired(entry.getValue(), now) && this.pagers.remove(entry.getKey(), entry.getValue()))
+                expired.add(entry.getValue().message);
+        }
+        return expired;
+    }
+
+    private boolean isExpired(Pager pager, long now) {
+        return now - pager.lastAccess >= this.expirationMillis;
+    }
+
+    /**
+     * A message whose pager was removed from the store.
+     */
+    record PagedMessage(GatewayDiscordClient client, Snowflake channelId, Snowflake messageId) {}
+
+    /**
+     * @param index The zero-based index of the page.
+     * @param count The number of pages loaded so far.
+     * @param complete Whether {@code count} is the total number of pages.
+     * @param content The content of the page.
+     */
+    record Page(int index, int count, boolean complete, String content) {}
+
+    static final class Pager {
+        private final PagedMessage message;
+        private final Snowflake authorId;
+        private final PageSource source;
+        private int index;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Pager(PagedMessage message, Snowflake authorId, PageSource source) {
+            this.message = message;
+            this.authorId = authorId;
+            this.source = source;
+        }
+
+        /**
+         * Moves to another page according to the pager reaction, loading pages if needed.
+         * Turns are serialized so that concurrent reactions cannot skip over or lose a page.
+         *
+         * @param emoji One of {@link PagerListener#PAGER_LIST}.
+         * @return The page to show.
+         */
+        synchronized Page turn(ReactionEmoji emoji) {
+            int target;
+            if (emoji.equals(Reactions.REWIND)) {
+                target = 0;
+            } else if (emoji.equals(Reactions.ARROW_LEFT)) {
+                target = this.index == 0 ? Integer.MAX_VALUE : this.index - 1;
+            } else if (emoji.equals(Reactions.ARROW_RIGHT)) {
+                target = this.index + 1;
+            } else {
+                target = Integer.MAX_VALUE;
+            }
+
+            String content = this.source.getPage(target);
+            if (content == null) {
+                // Moving right past the end wraps around, while anything else past the end means the last page
+                target = emoji.equals(Reactions.ARROW_RIGHT) ? 0 : this.source.getPageCount() - 1;
+                content = this.source.getPage(target);
+            }
+
+            this.index = target;
+            return new Page(target, this.source.getPageCount(), this.source.isComplete(), content);
+        }
+    }
+}
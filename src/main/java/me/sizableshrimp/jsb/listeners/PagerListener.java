@@ -27,86 +27,101 @@ import discord4j.core.GatewayDiscordClient;
 import discord4j.core.event.domain.message.ReactionAddEvent;
 import discord4j.core.object.Embed;
 import discord4j.core.object.entity.Message;
-import discord4j.core.object.entity.channel.GuildMessageChannel;
 import discord4j.core.object.entity.channel.MessageChannel;
 import discord4j.core.object.reaction.ReactionEmoji;
 import discord4j.rest.util.Permission;
 import me.sizableshrimp.jsb.api.EventListener;
+import me.sizableshrimp.jsb.api.WikiExecutor;
 import me.sizableshrimp.jsb.util.MessageUtil;
+import me.sizableshrimp.jsb.util.PermissionCache;
 import me.sizableshrimp.jsb.util.Reactions;
-import org.fastily.jwiki.core.Wiki;
 import org.jetbrains.annotations.NotNull;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.List;
-import java.util.Map;
 
 public class PagerListener extends EventListener<ReactionAddEvent> {
     public static final List<ReactionEmoji> PAGER_LIST = List.of(Reactions.REWIND, Reactions.ARROW_LEFT, Reactions.ARROW_RIGHT, Reactions.FAST_FORWARD);
-    private static final Map<Snowflake, PageData> pagedMessages = new HashMap<>();
+    private static final Duration EXPIRATION = Duration.ofMinutes(15);
+    private static final Duration SWEEP_INTERVAL = Duration.ofMinutes(1);
+    private static final int MAXIMUM_PAGED_MESSAGES = 256;
+    private static final PageStore pagedMessages = new PageStore(EXPIRATION, MAXIMUM_PAGED_MESSAGES);
 
-    public PagerListener(GatewayDiscordClient client, Wiki wiki) {
-        super(ReactionAddEvent.class, client, wiki);
+    public PagerListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+        super(ReactionAddEvent.class, client, wikiExecutor);
     }
 
     @Override
     protected Mono<Void> execute(Flux<ReactionAddEvent> onEvent) {
-        return onEvent
-                .filterWhen(e -> e.getChannel().map(c -> c instanceof GuildMessageChannel))
-                .filter(e -> pagedMessages.containsKey(e.getMessageId()) && pagedMessages.get(e.getMessageId()).authorId().equals(e.getUserId()))
+        Mono<Void> reactions = onEvent
+                .filter(e -> e.getGuildId().isPresent() && PAGER_LIST.contains(e.getEmoji()))
                 .flatMap(e -> {
-                    if (!PAGER_LIST.contains(e.getEmoji()))
+                    PageStore.Pager pager = pagedMessages.get(e.getMessageId(), e.getUserId());
+                    if (pager == null)
                         return Mono.empty();
 
-                    PageData data = pagedMessages.get(e.getMessageId());
-                    int lastIndex = data.pages().size() - 1;
-
-                    return e.getMessage().flatMap(m -> {
-                        if (e.getEmoji().equals(Reactions.REWIND)) {
-                            return editPage(m, data, 0);
-                        } else if (e.getEmoji().equals(Reactions.ARROW_LEFT)) {
-                            return editPage(m, data, data.index() == 0 ? lastIndex : data.index() - 1);
-                        } else if (e.getEmoji().equals(Reactions.ARROW_RIGHT)) {
-                            return editPage(m, data, data.index() == lastIndex ? 0 : data.index() + 1);
-                        } else {
-                            return editPage(m, data, lastIndex);
-                        }
-                    }).filterWhen(m -> m.getChannel().cast(GuildMessageChannel.class)
-                            .flatMap(c -> c.getEffectivePermissions(e.getClient().getSelfId()).map(p -> p.contains(Permission.MANAGE_MESSAGES)))
-                    ).flatMap(m -> m.removeReaction(e.getEmoji(), e.getUserId()));
+                    // Turning may have to load more pages from the wiki
+                    return this.wikiExecutor.call(w -> pager.turn(e.getEmoji()))
+                            .flatMap(page -> e.getMessage().flatMap(m -> editPage(m, page)))
+                            .filterWhen(m -> PermissionCache.getSelfPermissions(m).map(p -> p.contains(Permission.MANAGE_MESSAGES)))
+                            .flatMap(m -> m.removeReaction(e.getEmoji(), e.getUserId()));
                 }).then();
+
+        Mono<Void> expiry = Flux.interval(SWEEP_INTERVAL)
+                .flatMap(tick -> removePagerReactions(pagedMessages.removeExpired()))
+                .then();
+
+        return Mono.when(reactions, expiry);
     }
 
     @NotNull
-    private Mono<Message> editPage(Message message, PageData data, int index) {
-        String description = data.pages().get(index);
-        pagedMessages.put(message.getId(), new PageData(index, data.pages(), data.authorId()));
+    private Mono<Message> editPage(Message message, PageStore.Page page) {
         return message.edit(edit -> {
             Embed embed = message.getEmbeds().get(0);
             edit.setEmbed(embedSpec -> embedSpec.setTitle(embed.getTitle().get())
                     .setUrl(embed.getUrl().get())
-                    .setFooter("Page " + (index + 1) + "/" + data.pages().size(), null)
-                    .setDescription(description));
+                    .setFooter(formatFooter(page.index(), page.count(), page.complete()), null)
+                    .setDescription(page.content()));
         });
     }
 
-    public static Mono<Message> sendInitialPageMessage(MessageChannel channel, PageData data, String specialPage, String url) {
-        String description = data.pages().get(0);
-        int size = data.pages().size();
+    /**
+     * Sends the first page of the source and adds the pager reactions if there may be more pages.
+     * The first page is loaded on the calling thread if it has not been loaded yet.
+     *
+     * @param channel The channel to send the message in.
+     * @param source The pages to show, which must have at least one page.
+     * @param authorId The id of the only user allowed to turn the pages.
+     * @param specialPage The title of the embed.
+     * @param url The url of the embed title.
+     * @return The sent message.
+     */
+    public static Mono<Message> sendInitialPageMessage(MessageChannel channel, PageSource source, Snowflake authorId, String specialPage, String url) {
+        String description = source.getPage(0);
+        boolean single = source.isComplete() && source.getPageCount() == 1;
+        String footer = formatFooter(0, source.getPageCount(), source.isComplete());
         return MessageUtil.sendEmbed(embedSpec -> embedSpec.setTitle(specialPage)
                 .setUrl(url)
-                .setFooter("Page 1/" + size, null)
+                .setFooter(footer, null)
                 .setDescription(description), channel)
-                .filter(m -> size > 1)
-                .doOnNext(m -> pagedMessages.put(m.getId(), data))
-                .flatMap(m -> MessageUtil.addReactions(m, PAGER_LIST).thenReturn(m));
+                .filter(m -> !single)
+                .flatMap(m -> removePagerReactions(pagedMessages.put(m, authorId, source))
+                        .then(MessageUtil.addReactions(m, PAGER_LIST))
+                        .thenReturn(m));
+    }
+
+    private static String formatFooter(int index, int count, boolean complete) {
+        return "Page " + (index + 1) + "/" + count + (complete ? "" : "+");
     }
 
-    public record PageData(int index, List<String> pages, Snowflake authorId) {
-        public PageData(List<String> pages, Snowflake authorId) {
-            this(0, pages, authorId);
-        }
+    // Only the bot's own reactions are removed, which does not need any permissions
+    private static Mono<Void> removePagerReactions(List<PageStore.PagedMessage> removed) {
+        return Flux.fromIterable(removed)
+                .flatMap(paged -> paged.client().getMessageById(paged.channelId(), paged.messageId())
+                        .flatMapMany(m -> Flux.fromIterable(PAGER_LIST).flatMap(m::removeSelfReaction))
+                        .onErrorResume(e -> Mono.empty())) // The message may have been deleted
+                .then();
     }
 }
@@ -28,9 +28,9 @@ import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.event.domain.message.ReactionAddEvent;
 import discord4j.core.object.entity.Message;
 import me.sizableshrimp.jsb.api.EventListener;
+import me.sizableshrimp.jsb.api.WikiExecutor;
 import me.sizableshrimp.jsb.util.MessageUtil;
 import me.sizableshrimp.jsb.util.Reactions;
-import org.fastily.jwiki.core.Wiki;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -40,8 +40,8 @@ import java.util.Set;
 public abstract class TrashableMessageListener extends EventListener<MessageCreateEvent> {
     protected static final Set<Snowflake> messages = new HashSet<>();
 
-    protected TrashableMessageListener(GatewayDiscordClient client, Wiki wiki) {
-        super(MessageCreateEvent.class, client, wiki);
+    protected TrashableMessageListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+        super(MessageCreateEvent.class, client, wikiExecutor);
     }
 
     protected abstract Mono<Message> genMessage(MessageCreateEvent event);
@@ -57,8 +57,8 @@ public abstract class TrashableMessageListener extends EventListener<MessageCrea
     }
 
     public static final class DeleteListener extends EventListener<ReactionAddEvent> {
-        public DeleteListener(GatewayDiscordClient client, Wiki wiki) {
-            super(ReactionAddEvent.class, client, wiki);
+        public DeleteListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+            super(ReactionAddEvent.class, client, wikiExecutor);
         }
 
         @Override
@@ -26,11 +26,13 @@ import discord4j.core.GatewayDiscordClient;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.Message;
 import discord4j.core.object.entity.channel.MessageChannel;
+import me.sizableshrimp.jsb.api.WikiExecutor;
 import me.sizableshrimp.jsb.commands.utility.WikilinkCommand;
 import me.sizableshrimp.jsb.util.MessageUtil;
-import org.fastily.jwiki.core.Wiki;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,8 +43,8 @@ public class WikilinkListener extends TrashableMessageListener {
     private static final Pattern CODE_BLOCK = Pattern.compile("```.+?```", Pattern.DOTALL);
     private static final int MAX_LINKS = 5;
 
-    public WikilinkListener(GatewayDiscordClient client, Wiki wiki) {
-        super(client, wiki);
+    public WikilinkListener(GatewayDiscordClient client, WikiExecutor wikiExecutor) {
+        super(client, wikiExecutor);
     }
 
     protected Mono<Message> genMessage(MessageCreateEvent event) {
@@ -51,15 +53,16 @@ public class WikilinkListener extends TrashableMessageListener {
                 .map(WIKILINK::matcher)
                 .filter(Matcher::find)
                 .flatMap(m -> event.getMessage().getChannel().flatMap(MessageChannel::type).thenReturn(m))
+                .publishOn(this.wikiExecutor.getScheduler())
                 .map(matcher -> {
-                    StringBuilder builder = new StringBuilder();
+                    List<String> links = new ArrayList<>();
                     int i = 0;
 
                     do {
-                        WikilinkCommand.genWikilink(builder, this.wiki, matcher.group(1));
+                        links.add(matcher.group(1));
                     } while (matcher.find() && i++ < MAX_LINKS);
 
-                    return builder.toString();
+                    return WikilinkCommand.genWikilinks(new StringBuilder(), this.wiki, links).toString();
                 }).zipWith(event.getMessage().getChannel())
                 .flatMap(tuple -> MessageUtil.sendMessage(tuple.getT1(), tuple.getT2()));
     }
@@ -22,22 +22,52 @@
 
 package me.sizableshrimp.jsb.util;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.time.Duration;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 /**
- * A Map-like data structure that retrieves data from a {@link Function} and
+ * A thread-safe, Map-like data structure that retrieves data from a {@link Function} and
  * caches it until it has been cached longer than the set expiration.
+ * <p>
+ * Concurrent callers that miss on the same key share a single call to the retrieval {@link Function}.
+ * Once a value has been cached for most of its expiration, the next access reloads it in the background
+ * while continuing to serve the old value. When the map grows past its maximum size,
+ * the least recently accessed entries are evicted.
  *
  * @param <K> the type of keys
  * @param <V> the type of values
  */
 public class CachedMap<K, V> {
-    private final Map<K, TimedTuple<V>> map = new HashMap<>();
-    private Duration expiration;
-    private long cachedExpiration;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachedMap.class);
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+    private static final double REFRESH_AHEAD_FACTOR = 0.8;
+    private static final ThreadPoolExecutor REFRESH_EXECUTOR = createRefreshExecutor();
+    private final Map<K, Entry<V>> map = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final int maximumSize;
+    private volatile Duration expiration;
+    private volatile long cachedExpiration;
+    private volatile long cachedRefreshAfter;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder totalLoadNanos = new LongAdder();
 
     /**
      * Creates a {@link CachedMap} that defaults to expire data after 10 minutes.
@@ -52,38 +82,143 @@ public class CachedMap<K, V> {
      * @param expiration The {@link Duration} until data is expired and retrieved again.
      */
     public CachedMap(Duration expiration) {
-        this.expiration = expiration;
-        this.cachedExpiration = expiration.toMillis();
+        this(expiration, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a {@link CachedMap} that expires after the given expiration and holds at most {@code maximumSize} entries.
+     *
+     * @param expiration The {@link Duration} until data is expired and retrieved again.
+     * @param maximumSize The maximum number of entries before the least recently accessed entries are evicted.
+     */
+    public CachedMap(Duration expiration, int maximumSize) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("maximumSize must be positive");
+        this.maximumSize = maximumSize;
+        setExpiration(expiration);
     }
 
     /**
      * Get the cached value in the Map if it exists and has not passed expiration,
      * otherwise retrieve the value from the {@link Function}.
+     * If the value is close to expiring, it is reloaded in the background and the current value is returned.
      *
      * @param key The key to lookup in the Map.
      * @param retrieve The {@link Function} called if the data is not cached or has expired.
      * @return The result cached or retrieved from the {@link Function}.
      */
     public V getOrRetrieve(K key, Function<K, V> retrieve) {
-        TimedTuple<V> data = this.map.get(key);
-        if (data == null || data.timestamp() + this.cachedExpiration < System.currentTimeMillis()) {
-            return retrieve(key, retrieve);
+        Entry<V> data = this.map.get(key);
+        long now = System.currentTimeMillis();
+        if (data == null || data.timestamp + this.cachedExpiration < now) {
+            this.misses.increment();
+            return load(key, retrieve);
         }
 
-        return data.value();
+        this.hits.increment();
+        data.lastAccess = now;
+        if (data.timestamp + this.cachedRefreshAfter < now)
+            refresh(key, retrieve);
+
+        return data.value;
     }
 
     /**
      * Retrieve the value provided from the {@link Function} without considering the expiration of previous data.
+     * If another thread is already retrieving the value for this key, waits for and returns that result instead.
      *
      * @param key The key to lookup in the Map.
      * @param retrieve The {@link Function} called to retrieve the data.
      * @return The result retrieved from the {@link Function} which is cached in the map.
      */
     public V retrieve(K key, Function<K, V> retrieve) {
-        V value = retrieve.apply(key);
-        this.map.put(key, new TimedTuple<>(value));
-        return value;
+        return load(key, retrieve);
+    }
+
+    /**
+     * Returns the cached value for the key regardless of expiration, or null if there is none.
+     * This never calls a retrieval function.
+     *
+     * @param key The key to lookup in the Map.
+     * @return the cached value for the key, or null if there is none.
+     */
+    public V getIfPresent(K key) {
+        Entry<V> data = this.map.get(key);
+        return data == null ? null : data.value;
+    }
+
+    /**
+     * Returns the cached value for the key if it has not passed expiration, or null otherwise.
+     * This never calls a retrieval function.
+     *
+     * @param key The key to lookup in the Map.
+     * @return the cached value for the key if it has not passed expiration, or null otherwise.
+     */
+    public V getIfFresh(K key) {
+        Entry<V> data = this.map.get(key);
+        long now = System.currentTimeMillis();
+        if (data == null || data.timestamp + this.cachedExpiration < now) {
+            this.misses.increment();
+            return null;
+        }
+
+        this.hits.increment();
+        data.lastAccess = now;
+        return data.value;
+    }
+
+    /**
+     * Put a value in the Map as if it had been retrieved at the given time.
+     *
+     * @param key The key to store the value under.
+     * @param value The value to store.
+     * @param timestamp The time in epoch milliseconds when the value was retrieved.
+     */
+    public void put(K key, V value, long timestamp) {
+        this.map.put(key, new Entry<>(value, timestamp));
+        evictIfNecessary();
+    }
+
+    /**
+     * Returns the time in epoch milliseconds when the value for the key was retrieved, or -1 if it is not cached.
+     *
+     * @param key The key to lookup in the Map.
+     * @return the time in epoch milliseconds when the value for the key was retrieved, or -1 if it is not cached.
+     */
+    public long getTimestamp(K key) {
+        Entry<V> data = this.map.get(key);
+        return data == null ? -1 : data.timestamp;
+    }
+
+    /**
+     * Calls the visitor for every cached entry, including expired entries, without counting as an access.
+     *
+     * @param visitor The visitor called with each key, value, and the time in epoch milliseconds when it was retrieved.
+     */
+    public void forEach(EntryVisitor<? super K, ? super V> visitor) {
+        this.map.forEach((key, entry) -> visitor.visit(key, entry.value, entry.timestamp));
+    }
+
+    /**
+     * Removes the value for the key. A load of the key that is in progress still returns its result to
+     * the callers waiting for it, but the result is not cached, since it may have been retrieved before the change
+     * that caused the invalidation.
+     *
+     * @param key The key to remove.
+     */
+    public void invalidate(K key) {
+        // Loads only store their result while they are still registered, so this must happen before removing the value
+        this.loading.remove(key);
+        this.map.remove(key);
+    }
+
+    public void invalidateAll() {
+        this.loading.clear();
+        this.map.clear();
+    }
+
+    public int size() {
+        return this.map.size();
     }
 
     public Duration getExpiration() {
@@ -93,5 +228,157 @@ public class CachedMap<K, V> {
     public void setExpiration(Duration expiration) {
         this.expiration = expiration;
         this.cachedExpiration = expiration.toMillis();
+        this.cachedRefreshAfter = (long) (this.cachedExpiration * REFRESH_AHEAD_FACTOR);
+    }
+
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    public Stats getStats() {
+        long loadCount = this.loads.sum();
+        double averageLoadMillis = loadCount == 0 ? 0 : this.totalLoadNanos.sum() / (loadCount * 1_000_000D);
+        return new Stats(this.hits.sum(), this.misses.sum(), loadCount, this.loadFailures.sum(), this.refreshes.sum(),
+                this.evictions.sum(), averageLoadMillis);
+    }
+
+    private V load(K key, Function<K, V> retrieve) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = this.loading.putIfAbsent(key, future);
+        if (existing != null)
+            return join(existing);
+
+        try {
+            V value = timedApply(key, retrieve, future);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.loading.remove(key, future);
+        }
+    }
+
+    private void refresh(K key, Function<K, V> retrieve) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        if (this.loading.putIfAbsent(key, future) != null)
+            return; // Already being loaded
+
+        try {
+            REFRESH_EXECUTOR.execute(() -> {
+                try {
+                    future.complete(timedApply(key, retrieve, future));
+                    this.refreshes.increment();
+                } catch (RuntimeException | Error e) {
+                    LOGGER.warn("Failed to refresh cached value for key {}, keeping the previous value", key, e);
+                    future.completeExceptionally(e);
+                } finally {
+                    this.loading.remove(key, future);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // All refresh threads are busy; the value will be loaded on expiration instead
+            this.loading.remove(key, future);
+            future.cancel(false);
+        }
+    }
+
+    private V timedApply(K key, Function<K, V> retrieve, CompletableFuture<V> future) {
+        long start = System.nanoTime();
+        try {
+            V value = retrieve.apply(key);
+            // Storing while holding the loading entry makes this atomic with invalidate, which removes the entry first
+            boolean[] stored = new boolean[1];
+            this.loading.computeIfPresent(key, (k, current) -> {
+                if (current == future) {
+                    this.map.put(key, new Entry<>(value, System.currentTimeMillis()));
+                    stored[0] = true;
+                }
+                return current;
+            });
+            if (stored[0])
+                evictIfNecessary();
+            return value;
+        } catch (RuntimeException | Error e) {
+            this.loadFailures.increment();
+            throw e;
+        } finally {
+            this.loads.increment();
+            this.totalLoadNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void evictIfNecessary() {
+        while (this.map.size() > this.maximumSize) {
+            K eldest = null;
+            long eldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<K, Entry<V>> entry : this.map.entrySet()) {
+                if (entry.getValue().lastAccess < eldestAccess) {
+                    eldest = entry.getKey();
+                    eldestAccess = entry.getValue().lastAccess;
+                }
+            }
+            if (eldest == null || this.map.remove(eldest) == null)
+                return;
+            this.evictions.increment();
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime)
+                throw runtime;
+            if (cause instanceof Error error)
+                throw error;
+            throw e;
+        }
+    }
+
+    private static ThreadPoolExecutor createRefreshExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(0, 4, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "cache-refresh-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A snapshot of the statistics of a {@link CachedMap}.
+     *
+     * @param hits The number of lookups that returned a cached value.
+     * @param misses The number of lookups that had to retrieve a value.
+     * @param loads The number of times the retrieval function was called, including refreshes.
+     * @param loadFailures The number of times the retrieval function threw an exception.
+     * @param refreshes The number of successful background refreshes.
+     * @param evictions The number of entries evicted because the map was full.
+     * @param averageLoadMillis The average time in milliseconds spent in the retrieval function.
+     */
+    public record Stats(long hits, long misses, long loads, long loadFailures, long refreshes, long evictions, double averageLoadMillis) {
+        public double hitRate() {
+            long total = this.hits + this.misses;
+            return total == 0 ? 1 : (double) this.hits / total;
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryVisitor<K, V> {
+        void visit(K key, V value, long timestamp);
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long timestamp;
+        private volatile long lastAccess;
+
+        private Entry(V value, long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+            this.lastAccess = System.currentTimeMillis();
+        }
     }
 }
@@ -22,7 +22,6 @@
 
 package me.sizableshrimp.jsb.util;
 
-import discord4j.common.util.Snowflake;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.Message;
 import discord4j.core.object.entity.User;
@@ -65,10 +64,7 @@ public final class MessageUtil {
     }
 
     public static Mono<Boolean> canSendMessages(Message message) {
-        Snowflake id = message.getClient().getSelfId();
-        return message.getChannel()
-                .cast(GuildMessageChannel.class)
-                .flatMap(c -> c.getEffectivePermissions(id))
+        return PermissionCache.getSelfPermissions(message)
                 .map(set -> set.contains(Permission.SEND_MESSAGES));
     }
 
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.util;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.channel.GuildMessageChannel;
+import discord4j.rest.util.PermissionSet;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the bot's own effective permissions per guild channel so that the permission checks done for every
+ * command message and pager reaction are usually a map lookup instead of walking roles and overwrites.
+ * <p>
+ * Entries are invalidated by the listeners in {@link me.sizableshrimp.jsb.listeners.CacheInvalidationListeners}
+ * when roles, channels or the bot's own member change. They also expire after {@link #EXPIRATION} in case an
+ * update was missed, such as a category overwrite change that was not propagated to its channels.
+ */
+public final class PermissionCache {
+    private static final Duration EXPIRATION = Duration.ofMinutes(10);
+    private static final Map<Key, Entry> permissions = new ConcurrentHashMap<>();
+    // Incremented on every invalidation so that a lookup which started before it does not store stale permissions
+    private static final AtomicLong generation = new AtomicLong();
+
+    private PermissionCache() {}
+
+    /**
+     * Returns the bot's effective permissions in the channel the message was sent in.
+     *
+     * @param message The message whose channel to check.
+     * @return The bot's permissions, or an empty {@link Mono} if the message was not sent in a guild.
+     */
+    public static Mono<PermissionSet> getSelfPermissions(Message message) {
+        Optional<Snowflake> guildId = message.getGuildId();
+        if (guildId.isEmpty())
+            return Mono.empty();
+
+        PermissionSet cached = getCached(new Key(guildId.get(), message.getChannelId()));
+        if (cached != null)
+            return Mono.just(cached);
+
+        return message.getChannel()
+                .ofType(GuildMessageChannel.class)
+                .flatMap(PermissionCache::getSelfPermissions);
+    }
+
+    /**
+     * Returns the bot's effective permissions in the channel.
+     *
+     * @param channel The channel to check.
+     * @return The bot's permissions.
+     */
+    public static Mono<PermissionSet> getSelfPermissions(GuildMessageChannel channel) {
+        Key key = new Key(channel.getGuildId(), channel.getId());
+        PermissionSet cached = getCached(key);
+        if (cached != null)
+            return Mono.just(cached);
+
+        long startGeneration = generation.get();
+        return channel.getEffectivePermissions(channel.getClient().getSelfId())
+                .doOnNext(set -> {
+                    if (generation.get() == startGeneration)
+                        permissions.put(key, new Entry(set, System.currentTimeMillis()));
+                });
+    }
+
+    public static void invalidateGuild(Snowflake guildId) {
+        generation.incrementAndGet();
+        permissions.keySet().removeIf(key -> key.guildId().equals(guildId));
+    }
+
+    public static void invalidateChannel(Snowflake channelId) {
+        generation.incrementAndGet();
+        permissions.keySet().removeIf(key -> key.channelId().equals(channelId));
+    }
+
+    private static PermissionSet getCached(Key key) {
+        Entry entry = permissions.get(key);
+        if (entry == null)
+            return null;
+        if (System.currentTimeMillis() - entry.timestamp() >= EXPIRATION.toMillis()) {
+            permissions.remove(key, entry);
+            return null;
+        }
+        return entry.permissions();
+    }
+
+    private record Key(Snowflake guildId, Snowflake channelId) {}
+
+    private record Entry(PermissionSet permissions, long timestamp) {}
+}
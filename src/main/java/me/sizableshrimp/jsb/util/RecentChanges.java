@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.fastily.jwiki.core.Wiki;
+import org.fastily.jwiki.util.FL;
+import org.fastily.jwiki.util.GSONP;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Polls {@code list=recentchanges} of a {@link Wiki} for page creations and log entries (deletions, moves, uploads, etc.)
+ * and notifies registered listeners, so that caches can be invalidated without checking the wiki on every access.
+ * Polling starts when the first listener is added for a {@link Wiki}.
+ */
+public final class RecentChanges {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecentChanges.class);
+    public static final Duration POLL_INTERVAL = Duration.ofSeconds(30);
+    private static final Map<Wiki, RecentChanges> watchers = new ConcurrentHashMap<>();
+    private final Wiki wiki;
+    private final List<Consumer<RecentChange>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService executor;
+    private String lastTimestamp;
+    private long lastRcid;
+
+    private RecentChanges(Wiki wiki) {
+        this.wiki = wiki;
+        this.lastTimestamp = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "recentchanges");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = POLL_INTERVAL.toMillis();
+        this.executor.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Register a listener to be called from a background thread for each recent change on the wiki.
+     *
+     * @param wiki The {@link Wiki} to watch.
+     * @param listener The listener to call for each {@link RecentChange}.
+     */
+    public static void addListener(Wiki wiki, Consumer<RecentChange> listener) {
+        watchers.computeIfAbsent(wiki, RecentChanges::new).listeners.add(listener);
+    }
+
+    /**
+     * Returns the page creations and log entries since the given time, oldest first.
+     * This is a blocking call, intended for catching up on changes that happened before listening started.
+     *
+     * @param wiki The {@link Wiki} to query.
+     * @param since The time to start from, inclusive.
+     * @return the changes since the given time.
+     */
+    public static List<RecentChange> getChangesSince(Wiki wiki, Instant since) {
+        return fetch(wiki, since.truncatedTo(ChronoUnit.SECONDS).toString());
+    }
+
+    private void poll() {
+        try {
+            for (RecentChange change : fetch(this.wiki, this.lastTimestamp)) {
+                if (change.rcid() <= this.lastRcid)
+                    continue; // rcstart is inclusive, so changes at the last timestamp are returned again
+                this.lastRcid = change.rcid();
+                this.lastTimestamp = change.timestamp();
+
+                for (Consumer<RecentChange> listener : this.listeners) {
+                    try {
+                        listener.accept(change);
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Recent changes listener threw an exception for {}", change, e);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to poll recent changes", e);
+        }
+    }
+
+    private static List<RecentChange> fetch(Wiki wiki, String start) {
+        List<RecentChange> changes = new ArrayList<>();
+        Map<String, String> continueParams = Map.of();
+        do {
+            HashMap<String, String> params = FL.pMap("list", "recentchanges", "rcprop", "title|ids|timestamp|loginfo",
+                    "rctype", "new|log", "rcdir", "newer", "rcstart", start, "rclimit", "500");
+            params.putAll(continueParams);
+            JsonObject json = wiki.basicPOST("query", params).getJsonBody().getAsJsonObject();
+
+            JsonObject query = json.getAsJsonObject("query");
+            JsonElement list = query == null ? null : query.get("recentchanges");
+            if (list != null) {
+                for (JsonElement element : list.getAsJsonArray()) {
+                    changes.add(RecentChange.fromJson(element.getAsJsonObject()));
+                }
+            }
+
+            JsonObject cont = json.getAsJsonObject("continue");
+            if (cont == null) {
+                continueParams = null;
+            } else {
+                Map<String, String> next = new HashMap<>();
+                cont.entrySet().forEach(entry -> next.put(entry.getKey(), entry.getValue().getAsString()));
+                continueParams = next;
+            }
+        } while (continueParams != null);
+
+        return changes;
+    }
+
+    /**
+     * A single entry from {@code list=recentchanges}.
+     *
+     * @param rcid The id of the recent change.
+     * @param type The type of change, either "new" or "log".
+     * @param ns The namespace of the affected page.
+     * @param title The title of the affected page. For moves, this is the original title.
+     * @param timestamp The ISO 8601 timestamp of the change.
+     * @param logType The log type, e.g. "delete" or "move", or null if this is not a log entry.
+     * @param logAction The log action, e.g. "delete" or "restore", or null if this is not a log entry.
+     * @param logParams The log parameters, or null if there are none.
+     */
+    public record RecentChange(long rcid, String type, int ns, String title, String timestamp, String logType, String logAction, JsonObject logParams) {
+        private static RecentChange fromJson(JsonObject json) {
+            JsonElement params = json.get("logparams");
+            return new RecentChange(json.get("rcid").getAsLong(), GSONP.getStr(json, "type"), json.get("ns").getAsInt(), GSONP.getStr(json, "title"),
+                    GSONP.getStr(json, "timestamp"), GSONP.getStr(json, "logtype"), GSONP.getStr(json, "logaction"),
+                    params != null && params.isJsonObject() ? params.getAsJsonObject() : null);
+        }
+
+        public boolean isCreation() {
+            return "new".equals(this.type) || ("upload".equals(this.logType) && "upload".equals(this.logAction));
+        }
+
+        public boolean isDeletion() {
+            return "delete".equals(this.logType) && "delete".equals(this.logAction);
+        }
+
+        public boolean isRestore() {
+            return "delete".equals(this.logType) && "restore".equals(this.logAction);
+        }
+
+        public boolean isImport() {
+            return "import".equals(this.logType);
+        }
+
+        public boolean isMove() {
+            return "move".equals(this.logType) && this.logParams != null && this.logParams.has("target_title");
+        }
+
+        /**
+         * Returns the destination title of a move, or null if this is not a move.
+         *
+         * @return the destination title of a move, or null if this is not a move.
+         */
+        public String getMoveTarget() {
+            return isMove() ? GSONP.getStr(this.logParams, "target_title") : null;
+        }
+
+        public int getMoveTargetNs() {
+            return isMove() && this.logParams.has("target_ns") ? this.logParams.get("target_ns").getAsInt() : this.ns;
+        }
+
+        /**
+         * Returns true if this is a move that did not leave a redirect behind.
+         *
+         * @return true if this is a move that did not leave a redirect behind.
+         */
+        public boolean isRedirectSuppressed() {
+            return isMove() && this.logParams.has("suppressredirect");
+        }
+
+        /**
+         * Returns the titles whose existence may have changed because of this change.
+         *
+         * @return the titles whose existence may have changed because of this change.
+         */
+        public List<String> getAffectedTitles() {
+            String target = getMoveTarget();
+            return target == null ? List.of(this.title) : List.of(this.title, target);
+        }
+    }
+}
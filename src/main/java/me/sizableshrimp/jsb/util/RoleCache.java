@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.util;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.object.entity.Guild;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.Role;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Caches a mapping of role names to role IDs per guild so that role requirements can be checked against
+ * {@link Member#getRoleIds()} without fetching every role of the member on each command.
+ * <p>
+ * Entries are invalidated by the listeners in {@link me.sizableshrimp.jsb.listeners.CacheInvalidationListeners}
+ * whenever a role is created, updated or deleted.
+ */
+public final class RoleCache {
+    private static final Map<Snowflake, Map<String, Set<Snowflake>>> roleIdsByName = new ConcurrentHashMap<>();
+    private static final AtomicLong generation = new AtomicLong();
+
+    private RoleCache() {}
+
+    /**
+     * Checks whether the member has a role with each of the given names.
+     *
+     * @param member The member to check.
+     * @param roleNames The names of the roles that are all required.
+     * @return true if the member has every role in {@code roleNames}.
+     */
+    public static Mono<Boolean> hasRoles(Member member, Collection<String> roleNames) {
+        Set<Snowflake> memberRoleIds = member.getRoleIds();
+        return getRoleIdsByName(member).map(byName -> roleNames.stream().allMatch(name -> {
+            Set<Snowflake> ids = byName.get(name);
+            return ids != null && ids.stream().anyMatch(memberRoleIds::contains);
+        }));
+    }
+
+    public static void invalidateGuild(Snowflake guildId) {
+        generation.incrementAndGet();
+        roleIdsByName.remove(guildId);
+    }
+
+    private static Mono<Map<String, Set<Snowflake>>> getRoleIdsByName(Member member) {
+        Snowflake guildId = member.getGuildId();
+        Map<String, Set<Snowflake>> cached = roleIdsByName.get(guildId);
+        if (cached != null)
+            return Mono.just(cached);
+
+        long startGeneration = generation.get();
+        return member.getGuild()
+                .flatMapMany(Guild::getRoles)
+                // Role names are not unique, so keep every role with a given name
+                .collect(Collectors.groupingBy(Role::getName, Collectors.mapping(Role::getId, Collectors.toUnmodifiableSet())))
+                .map(Map::copyOf)
+                .doOnNext(byName -> {
+                    if (generation.get() == startGeneration)
+                        roleIdsByName.put(guildId, byName);
+                });
+    }
+}
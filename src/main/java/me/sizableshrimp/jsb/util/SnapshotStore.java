@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.util;
+
+import org.fastily.jwiki.core.Wiki;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists in-memory caches to a compact binary file so that a restart does not have to rebuild all of them from the wiki.
+ * <p>
+ * Caches take part by calling {@link #register(Participant)}, usually from a static initializer or constructor.
+ * When the snapshot is opened with {@link #open(Path, Wiki, String)}, each participant's section is restored as
+ * soon as both the snapshot and the participant are available, regardless of which comes first, and
+ * {@link Participant#revalidate(Wiki)} is then called in the background. The snapshot is saved periodically and on shutdown.
+ * <p>
+ * The file starts with a header identifying the wiki it was written for; a snapshot from another wiki is ignored.
+ * Every section is length-prefixed so that one unreadable or unknown section does not affect the others.
+ */
+public final class SnapshotStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotStore.class);
+    private static final int MAGIC = 0x4A53424E;
+    private static final int VERSION = 1;
+    private static final Duration SAVE_INTERVAL = Duration.ofMinutes(15);
+    private static final List<Participant> participants = new CopyOnWriteArrayList<>();
+    // Sections read from disk which have not been claimed by a participant yet
+    private static final Map<String, Section> pending = new HashMap<>();
+    private static ScheduledExecutorService executor;
+    private static Path file;
+    private static Wiki wiki;
+    private static String wikiId;
+
+    private SnapshotStore() {}
+
+    /**
+     * Adds a participant to the snapshot. If the snapshot has already been opened and contains a section
+     * for this participant, the section is restored immediately.
+     *
+     * @param participant The participant to add.
+     */
+    public static synchronized void register(Participant participant) {
+        participants.add(participant);
+        if (wiki != null)
+            restore(participant);
+    }
+
+    /**
+     * Reads the snapshot file, restores all participants that are already registered, and schedules saving.
+     * Does nothing if the snapshot has already been opened.
+     *
+     * @param path The snapshot file.
+     * @param wiki The {@link Wiki} the cached data belongs to.
+     * @param wikiId A stable identifier of the wiki across restarts, such as its API endpoint.
+     */
+    public static synchronized void open(Path path, Wiki wiki, String wikiId) {
+        if (SnapshotStore.wiki != null)
+            return;
+
+        SnapshotStore.file = path;
+        SnapshotStore.wiki = wiki;
+        SnapshotStore.wikiId = wikiId;
+        read();
+        for (Participant participant : participants) {
+            restore(participant);
+        }
+
+        executor().scheduleWithFixedDelay(SnapshotStore::save, SAVE_INTERVAL.toMillis(), SAVE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(SnapshotStore::save, "snapshot-shutdown"));
+    }
+
+    /**
+     * Writes every registered participant to the snapshot file, keeping sections that have not been claimed yet.
+     * The file is replaced atomically, so a crash while saving leaves the previous snapshot intact.
+     */
+    public static synchronized void save() {
+        if (wiki == null)
+            return;
+
+        long start = System.nanoTime();
+        Map<String, Section> sections = new LinkedHashMap<>(pending);
+        long now = System.currentTimeMillis();
+        for (Participant participant : participants) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                participant.writeSnapshot(wiki, out);
+                out.flush();
+                sections.put(participant.getSnapshotId(), new Section(now, bytes.toByteArray()));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Could not write snapshot section {}", participant.getSnapshotId(), e);
+            }
+        }
+
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+
+            try (OutputStream stream = Files.newOutputStream(tempFile); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(wikiId);
+                out.writeInt(sections.size());
+                for (Map.Entry<String, Section> entry : sections.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().savedAt());
+                    out.writeInt(entry.getValue().data().length);
+                    out.write(entry.getValue().data());
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.debug("Saved {} snapshot sections in {} ms", sections.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            LOGGER.warn("Could not save snapshot to {}", file.toAbsolutePath(), e);
+        }
+    }
+
+    private static void read() {
+        try (InputStream stream = Files.newInputStream(file); DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Ignoring snapshot at {} with an unknown format", file.toAbsolutePath());
+                return;
+            }
+            String snapshotWikiId = in.readUTF();
+            if (!snapshotWikiId.equals(wikiId)) {
+                LOGGER.info("Ignoring snapshot at {} which was written for {}", file.toAbsolutePath(), snapshotWikiId);
+                return;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                long savedAt = in.readLong();
+                byte[] data = in.readNBytes(in.readInt());
+                pending.put(id, new Section(savedAt, data));
+            }
+            LOGGER.info("Loaded {} snapshot sections from {}", count, file.toAbsolutePath());
+        } catch (NoSuchFileException e) {
+            LOGGER.info("No snapshot found at {}", file.toAbsolutePath());
+        } catch (IOException e) {
+            LOGGER.warn("Could not read snapshot at {}", file.toAbsolutePath(), e);
+            pending.clear();
+        }
+    }
+
+    private static void restore(Participant participant) {
+        Section section = pending.remove(participant.getSnapshotId());
+        if (section == null)
+            return;
+
+        try {
+            participant.readSnapshot(wiki, new DataInputStream(new ByteArrayInputStream(section.data())), section.savedAt());
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not restore snapshot section {}", participant.getSnapshotId(), e);
+            return;
+        }
+
+        Wiki currentWiki = wiki;
+        executor().execute(() -> {
+            try {
+                participant.revalidate(currentWiki);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not revalidate snapshot section {}", participant.getSnapshotId(), e);
+            }
+        });
+    }
+
+    // Restores can happen while opening, before the executor for saving exists
+    private static ScheduledExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * A cache which is saved to and restored from the snapshot.
+     */
+    public interface Participant {
+        /**
+         * Returns the unique name of this participant's section in the snapshot.
+         *
+         * @return the unique name of this participant's section in the snapshot.
+         */
+        String getSnapshotId();
+
+        /**
+         * Writes the cached data for the wiki.
+         *
+         * @param wiki The {@link Wiki} the snapshot is for.
+         * @param out The stream to write to.
+         * @throws IOException if the data could not be written.
+         */
+        void writeSnapshot(Wiki wiki, DataOutputStream out) throws IOException;
+
+        /**
+         * Restores the cached data for the wiki. Data that has already expired should be skipped.
+         *
+         * @param wiki The {@link Wiki} the snapshot is for.
+         * @param in The stream containing exactly what {@link #writeSnapshot(Wiki, DataOutputStream)} wrote.
+         * @param savedAt The time in epoch milliseconds when the section was written.
+         * @throws IOException if the data could not be read.
+         */
+        void readSnapshot(Wiki wiki, DataInputStream in, long savedAt) throws IOException;
+
+        /**
+         * Called in the background after {@link #readSnapshot(Wiki, DataInputStream, long)} to check whether the restored
+         * data is still current, ideally using a cheaper request than loading the data again.
+         *
+         * @param wiki The {@link Wiki} the snapshot is for.
+         */
+        default void revalidate(Wiki wiki) {}
+    }
+
+    private record Section(long savedAt, byte[] data) {}
+}
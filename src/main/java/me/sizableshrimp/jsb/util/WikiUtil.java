@@ -22,7 +22,6 @@
 
 package me.sizableshrimp.jsb.util;
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import me.sizableshrimp.jsb.Bot;
@@ -34,18 +33,45 @@ import org.fastily.jwiki.core.WQuery;
 import org.fastily.jwiki.core.Wiki;
 import org.fastily.jwiki.util.FL;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public final class WikiUtil {
-    private static final QTemplate IMAGE_INFO = new QTemplate(FL.pMap("iiprop", "url"), "iilimit", "pages");
+    private static final QTemplate IMAGE_INFO = new QTemplate(FL.pMap("iiprop", "url|sha1"), "iilimit", "pages");
     private static final QTemplate SITE_INFO = new QTemplate(FL.pMap("action", "query", "meta", "siteinfo"), "query");
-    private static final Map<Wiki, String> baseUrls = new HashMap<>();
+    private static final Map<Wiki, String> baseUrls = new ConcurrentHashMap<>();
+
+    static {
+        SnapshotStore.register(new SnapshotStore.Participant() {
+            @Override
+            public String getSnapshotId() {
+                return "baseArticleUrl";
+            }
+
+            @Override
+            public void writeSnapshot(Wiki wiki, DataOutputStream out) throws IOException {
+                String base = baseUrls.get(wiki);
+                out.writeBoolean(base != null);
+                if (base != null)
+                    out.writeUTF(base);
+            }
+
+            @Override
+            public void readSnapshot(Wiki wiki, DataInputStream in, long savedAt) throws IOException {
+                // The article path of a wiki practically never changes, so it is not revalidated
+                if (in.readBoolean())
+                    baseUrls.putIfAbsent(wiki, in.readUTF());
+            }
+        });
+    }
 
     private WikiUtil() {}
 
@@ -66,6 +92,18 @@ public final class WikiUtil {
     }
 
     public static String getLatestFileUrl(Wiki wiki, String page) {
+        FileInfo info = getLatestFileInfo(wiki, page);
+        return info == null ? null : info.url();
+    }
+
+    /**
+     * Returns the url and SHA-1 hash of the latest revision of a file, or null if the file does not exist.
+     *
+     * @param wiki The {@link Wiki} instance.
+     * @param page The file page, with or without the "File:" prefix.
+     * @return the url and SHA-1 hash of the latest revision of a file, or null if the file does not exist.
+     */
+    public static FileInfo getLatestFileInfo(Wiki wiki, String page) {
         String file = page.startsWith("File:") ? page : "File:" + page;
         QReply reply = new WQuery(wiki, 1, IMAGE_INFO)
                 .set("titles", file)
@@ -76,8 +114,10 @@ public final class WikiUtil {
         if (missing.getValue() != null) // It is missing
             return null;
 
-        return reply.propComp("title", "imageinfo").values().iterator().next()
-                .getAsJsonArray().get(0).getAsJsonObject().get("url").getAsString();
+        JsonObject info = reply.propComp("title", "imageinfo").values().iterator().next()
+                .getAsJsonArray().get(0).getAsJsonObject();
+        JsonElement sha1 = info.get("sha1");
+        return new FileInfo(info.get("url").getAsString(), sha1 == null ? "" : sha1.getAsString());
     }
 
     /**
@@ -98,6 +138,53 @@ public final class WikiUtil {
         return current;
     }
 
+    /**
+     * Returns the id of the latest revision of a page using a query that does not fetch any content.
+     *
+     * @param wiki The {@link Wiki} instance.
+     * @param title The title of the page.
+     * @return the id of the latest revision of the page, or -1 if the page does not exist.
+     */
+    public static long getLatestRevisionId(Wiki wiki, String title) {
+        JsonObject json = wiki.basicPOST("query", FL.pMap("prop", "revisions", "rvprop", "ids", "titles", title))
+                .getJsonBody().getAsJsonObject();
+        JsonObject query = json.getAsJsonObject("query");
+        if (query == null)
+            return -1;
+
+        List<JsonObject> pages = getQueryPages(query);
+        if (pages.isEmpty() || pages.get(0).has("missing") || !pages.get(0).has("revisions"))
+            return -1;
+
+        return pages.get(0).getAsJsonArray("revisions").get(0).getAsJsonObject().get("revid").getAsLong();
+    }
+
+    /**
+     * Returns the text of a single revision.
+     *
+     * @param wiki The {@link Wiki} instance.
+     * @param revid The id of the revision.
+     * @return the text of the revision, or null if the revision does not exist or its text is hidden.
+     */
+    public static String getRevisionText(Wiki wiki, long revid) {
+        JsonObject json = wiki.basicPOST("query", FL.pMap("prop", "revisions", "rvprop", "content", "rvslots", "main", "revids", Long.toString(revid)))
+                .getJsonBody().getAsJsonObject();
+        JsonObject query = json.getAsJsonObject("query");
+        if (query == null)
+            return null;
+
+        List<JsonObject> pages = getQueryPages(query);
+        if (pages.isEmpty() || !pages.get(0).has("revisions"))
+            return null;
+
+        JsonObject revision = pages.get(0).getAsJsonArray("revisions").get(0).getAsJsonObject();
+        JsonObject slots = revision.getAsJsonObject("slots");
+        JsonObject main = slots != null && slots.has("main") ? slots.getAsJsonObject("main") : revision;
+        // formatversion=2 uses "content" while formatversion=1 uses "*"
+        JsonElement text = main.has("content") ? main.get("content") : main.get("*");
+        return text == null ? null : text.getAsString();
+    }
+
     public static List<QReply> getQueryReplies(WQuery query) {
         List<QReply> list = new ArrayList<>();
 
@@ -113,6 +200,28 @@ public final class WikiUtil {
         return list;
     }
 
+    /**
+     * Returns the pages of the {@code query} object of a raw API response.
+     * Supports both formatversion=1 (an object keyed by page id) and formatversion=2 (an array).
+     *
+     * @param query The {@code query} object of the response.
+     * @return the pages of the {@code query} object, or an empty list if there are none.
+     */
+    public static List<JsonObject> getQueryPages(JsonObject query) {
+        JsonElement pages = query.get("pages");
+        if (pages == null)
+            return List.of();
+
+        Iterable<JsonElement> values = pages.isJsonArray()
+                ? pages.getAsJsonArray()
+                : pages.getAsJsonObject().entrySet().stream().map(Map.Entry::getValue).toList();
+        List<JsonObject> list = new ArrayList<>();
+        for (JsonElement element : values) {
+            list.add(element.getAsJsonObject());
+        }
+        return list;
+    }
+
     public static List<JsonObject> getQueryRepliesAsList(WQuery query, String listComp) {
         return getQueryReplies(query).stream()
                 .flatMap(reply -> reply.listComp(listComp).stream())
@@ -133,47 +242,15 @@ public final class WikiUtil {
     }
 
     /**
-     * Returns a link to the {@code page} specified, or null if it does not exist.
-     * Supports interwiki links.
+     * Returns a link to the {@code page} specified, or null if it is not a valid title.
+     * Supports interwiki links. Results are cached by {@link WikilinkResolver}.
      *
      * @param wiki The {@link  Wiki} instance.
      * @param page The page to link to, not including square brackets.
-     * @return a link to the {@code page} specified, or null if it does not exist.
+     * @return a link to the {@code page} specified, or null if it is not a valid title.
      */
     public static String getWikiPageUrl(Wiki wiki, String page) {
-        page = page.startsWith(":") ? page : ":" + page;
-        JsonObject json = WikiUtil.parse(wiki, null, "[[" + page + "]]").getSuccessJson();
-        JsonArray localLinks = getOrDefault(json, "links");
-        JsonArray interwikiLinks = getOrDefault(json, "iwlinks");
-        JsonArray images = getOrDefault(json, "images");
-
-        String result = null;
-
-        if (localLinks.size() > 0) {
-            JsonObject obj = localLinks.get(0).getAsJsonObject();
-            result = getBaseWikiPageUrl(wiki, obj.get("*").getAsString());
-        } else if (interwikiLinks.size() > 0) {
-            JsonObject obj = interwikiLinks.get(0).getAsJsonObject();
-            result = obj.get("url").getAsString();
-        } else if (images.size() > 0) {
-            String image = images.get(0).getAsString();
-            result = getBaseWikiPageUrl(wiki, image);
-        }
-
-        if (result != null) {
-            // Add section link
-            int sectionIndex = page.indexOf('#');
-            if (sectionIndex != -1) {
-                result = result + page.substring(sectionIndex);
-            }
-        }
-
-        return result;
-    }
-
-    private static JsonArray getOrDefault(JsonObject json, String memberName) {
-        JsonElement arr = json.get(memberName);
-        return arr == null ? new JsonArray() : arr.getAsJsonArray();
+        return WikilinkResolver.resolve(wiki, List.of(page)).get(0).url();
     }
 
     /**
@@ -183,12 +260,15 @@ public final class WikiUtil {
      * @return the base article url including a trailing slash.
      */
     public static String getBaseArticleUrl(Wiki wiki) {
-        if (baseUrls.containsKey(wiki))
-            return baseUrls.get(wiki);
+        String cached = baseUrls.get(wiki);
+        if (cached != null)
+            return cached;
 
         String base = SITE_INFO.createQuery(wiki).next().metaComp("general").getAsJsonObject().get("base").getAsString();
         base = base.substring(0, base.lastIndexOf('/') + 1); // Include the trailing slash but remove the main page
         baseUrls.put(wiki, base);
         return base;
     }
+
+    public record FileInfo(String url, String sha1) {}
 }
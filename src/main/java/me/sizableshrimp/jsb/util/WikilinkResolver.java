@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.fastily.jwiki.core.Wiki;
+import org.fastily.jwiki.util.FL;
+import org.fastily.jwiki.util.GSONP;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves wikilinks in bulk, using a single {@code action=query} request per 50 titles to determine
+ * whether each link is a local page, a missing page, an interwiki link, or a special page.
+ * <p>
+ * Resolved links are cached, with a shorter expiration for missing pages. Cached links are invalidated
+ * when {@link RecentChanges} reports that their page was created, deleted, restored, or moved.
+ */
+public final class WikilinkResolver {
+    private static final int MAX_TITLES = 50;
+    private static final Duration EXPIRATION = Duration.ofHours(1);
+    private static final CachedMap<TitleKey, Wikilink> existing = new CachedMap<>(EXPIRATION, 10_000);
+    private static final CachedMap<TitleKey, Wikilink> missing = new CachedMap<>(Duration.ofMinutes(2), 10_000);
+    // The last time each normalized title was reported as changed, per wiki
+    private static final Map<Wiki, Map<String, Long>> invalidations = new ConcurrentHashMap<>();
+
+    private WikilinkResolver() {}
+
+    /**
+     * Resolves the given links, not including square brackets, in the same order they were given.
+     *
+     * @param wiki The {@link Wiki} instance.
+     * @param links The links to resolve, optionally with a leading colon, trailing section link, or {@code |label}.
+     * @return The resolved {@link Wikilink}s, in the same order as {@code links}.
+     */
+    public static List<Wikilink> resolve(Wiki wiki, List<String> links) {
+        Map<String, Long> invalidated = getInvalidations(wiki);
+        Map<String, Wikilink> resolved = new HashMap<>();
+        Set<String> titles = new LinkedHashSet<>();
+        for (String link : links) {
+            String title = getQueryTitle(link);
+            if (title.isBlank() || resolved.containsKey(title))
+                continue;
+
+            Wikilink cached = getCached(new TitleKey(wiki, title), invalidated);
+            if (cached != null) {
+                resolved.put(title, cached);
+            } else {
+                titles.add(title);
+            }
+        }
+
+        List<String> batch = new ArrayList<>(MAX_TITLES);
+        for (String title : titles) {
+            batch.add(title);
+            if (batch.size() == MAX_TITLES) {
+                query(wiki, batch, resolved);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+            query(wiki, batch, resolved);
+
+        List<Wikilink> result = new ArrayList<>(links.size());
+        for (String link : links) {
+            Wikilink base = resolved.get(getQueryTitle(link));
+            if (base == null) {
+                result.add(new Wikilink(link, getTitle(link), null, Type.INVALID));
+                continue;
+            }
+            // Add section link
+            String url = base.url() == null ? null : base.url() + getSection(link);
+            result.add(new Wikilink(link, base.title(), url, base.type()));
+        }
+        return result;
+    }
+
+    private static void query(Wiki wiki, List<String> titles, Map<String, Wikilink> resolved) {
+        // Cache entries are stamped with the time before the request, so a change reported while it runs still invalidates them
+        long start = System.currentTimeMillis();
+        JsonObject json = wiki.basicPOST("query", FL.pMap("titles", String.join("|", titles), "iwurl", "1"))
+                .getJsonBody().getAsJsonObject();
+        JsonObject query = json.getAsJsonObject("query");
+        if (query == null)
+            return;
+
+        Map<String, String> normalized = new HashMap<>();
+        for (JsonElement element : getArray(query, "normalized")) {
+            JsonObject obj = element.getAsJsonObject();
+            normalized.put(GSONP.getStr(obj, "from"), GSONP.getStr(obj, "to"));
+        }
+
+        Map<String, String> interwiki = new HashMap<>();
+        for (JsonElement element : getArray(query, "interwiki")) {
+            JsonObject obj = element.getAsJsonObject();
+            interwiki.put(GSONP.getStr(obj, "title"), GSONP.getStr(obj, "url"));
+        }
+
+        Map<String, JsonObject> pages = new HashMap<>();
+        for (JsonObject page : WikiUtil.getQueryPages(query)) {
+            pages.put(GSONP.getStr(page, "title"), page);
+        }
+
+        for (String title : titles) {
+            String target = normalized.getOrDefault(title, title);
+            String interwikiUrl = interwiki.get(target);
+            if (interwikiUrl != null) {
+                resolved.put(title, new Wikilink(title, target, interwikiUrl, Type.INTERWIKI));
+                continue;
+            }
+
+            JsonObject page = pages.get(target);
+            if (page == null || page.has("invalid"))
+                continue;
+
+            String url = WikiUtil.getBaseWikiPageUrl(wiki, target);
+            boolean missing = page.has("missing");
+            Type type;
+            if (page.has("ns") && page.get("ns").getAsInt() == -1) {
+                type = missing ? Type.MISSING_SPECIAL : Type.SPECIAL;
+            } else {
+                type = missing ? Type.MISSING_PAGE : Type.PAGE;
+            }
+            resolved.put(title, new Wikilink(title, target, url, type));
+        }
+
+        for (String title : titles) {
+            Wikilink wikilink = resolved.get(title);
+            if (wikilink == null)
+                continue; // Invalid titles are cheap to get wrong, so don't cache them
+            TitleKey key = new TitleKey(wiki, title);
+            if (wikilink.type() == Type.MISSING_PAGE || wikilink.type() == Type.MISSING_SPECIAL) {
+                missing.put(key, wikilink, start);
+            } else {
+                existing.put(key, wikilink, start);
+            }
+        }
+    }
+
+    private static Wikilink getCached(TitleKey key, Map<String, Long> invalidated) {
+        CachedMap<TitleKey, Wikilink> cache = existing;
+        Wikilink wikilink = cache.getIfFresh(key);
+        if (wikilink == null) {
+            cache = missing;
+            wikilink = cache.getIfFresh(key);
+        }
+        if (wikilink == null)
+            return null;
+
+        Long changed = invalidated.get(wikilink.title());
+        if (changed != null && changed >= cache.getTimestamp(key)) {
+            cache.invalidate(key);
+            return null;
+        }
+        return wikilink;
+    }
+
+    private static Map<String, Long> getInvalidations(Wiki wiki) {
+        return invalidations.computeIfAbsent(wiki, w -> {
+            Map<String, Long> map = new ConcurrentHashMap<>();
+            RecentChanges.addListener(w, change -> {
+                long now = System.currentTimeMillis();
+                for (String title : change.getAffectedTitles()) {
+                    map.put(title, now);
+                }
+                // Anything cached before the oldest possible entry has already expired
+                map.values().removeIf(time -> time + EXPIRATION.toMillis() < now);
+            });
+            return map;
+        });
+    }
+
+    private static JsonArray getArray(JsonObject json, String memberName) {
+        JsonElement arr = json.get(memberName);
+        return arr == null ? new JsonArray() : arr.getAsJsonArray();
+    }
+
+    private static String getTitle(String link) {
+        String target = getTarget(link);
+        int sectionIndex = target.indexOf('#');
+        return sectionIndex == -1 ? target : target.substring(0, sectionIndex);
+    }
+
+    private static String getQueryTitle(String link) {
+        String title = getTitle(link).trim();
+        return title.startsWith(":") ? title.substring(1) : title;
+    }
+
+    private static String getSection(String link) {
+        String target = getTarget(link);
+        int sectionIndex = target.indexOf('#');
+        return sectionIndex == -1 ? "" : target.substring(sectionIndex);
+    }
+
+    /**
+     * Returns the link without its {@code |label}, like the wikilink listener does for links in messages.
+     * Cutting at the first pipe also guarantees that titles never contain the separator used to batch them.
+     */
+    private static String getTarget(String link) {
+        int labelIndex = link.indexOf('|');
+        return labelIndex == -1 ? link : link.substring(0, labelIndex);
+    }
+
+    /**
+     * A resolved wikilink.
+     *
+     * @param link The link as it was written, not including square brackets.
+     * @param title The link without its section or label. For resolved titles, this is the normalized title.
+     * @param url The url of the link, including the section, or null if the link is invalid.
+     * @param type What the link points to.
+     */
+    public record Wikilink(String link, String title, String url, Type type) {}
+
+    private record TitleKey(Wiki wiki, String title) {}
+
+    public enum Type {
+        PAGE,
+        MISSING_PAGE,
+        INTERWIKI,
+        SPECIAL,
+        MISSING_SPECIAL,
+        INVALID
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021 SizableShrimp
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package me.sizableshrimp.jsb.args;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ArgsProcessorTest {
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "getmod",
+            "GetMod  AE2",
+            "gc TE \"Copper Ingot\"",
+            "gc TE \"Copper   \t Ingot\"  extra",
+            "wl \"Foo bar",
+            "say \\\"quoted\\\" words",
+            "say \\\\ backslash",
+            "say \\escape continues across tokens\\ until closed",
+            "wl Foo\u200BBar \u200B",
+            "\u200B",
+            "  cmd   a \n\n b\r\n\tc  ",
+            "cmd \"\" empty",
+            "cmd a\u000Bb\fc",
+            "cmd \"unterminated \\\" escape",
+            "   ",
+            ""
+    })
+    void matchesLegacyTokenizer(String message) {
+        assertMatchesLegacy(message);
+    }
+
+    @Test
+    void matchesLegacyTokenizerOnRandomMessages() {
+        char[] alphabet = {'a', 'B', ' ', ' ', '\t', '\n', '"', '\\', '\u200B', '\u0001', '\u00E9'};
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            char[] chars = new char[random.nextInt(24)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            assertMatchesLegacy(new String(chars));
+        }
+    }
+
+    @Test
+    void skipsPrefix() {
+        Args args = ArgsProcessor.processWithPrefix("!", "!GetMod  \"Applied Energistics 2\"");
+        assertEquals("getmod", args.getName());
+        assertEquals(List.of("Applied Energistics 2"), toList(args));
+        assertNull(ArgsProcessor.processWithPrefix("!", "!   "));
+    }
+
+    private static void assertMatchesLegacy(String message) {
+        List<String> expected = LegacyArgsProcessor.process(message);
+        Args args = ArgsProcessor.process(message);
+        if (expected == null) {
+            assertNull(args, message);
+            return;
+        }
+
+        assertEquals(expected.get(0), args.getName(), message);
+        List<String> expectedArgs = expected.subList(1, expected.size());
+        assertEquals(expectedArgs, toList(args), message);
+        assertEquals(String.join(" ", expectedArgs), args.getJoinedArgs(), message);
+    }
+
+    private static List<String> toList(Args args) {
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < args.getLength(); i++) {
+            list.add(args.getArg(i));
+        }
+        return list;
+    }
+}